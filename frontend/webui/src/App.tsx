@@ -2,19 +2,35 @@ import { useEffect, useRef, useState } from 'react';
 import Sidebar from './components/Sidebar';
 import ChatWindow from './components/ChatWindow';
 import * as api from './api';
-import type { Bot, Conversation, CreateBotRequest, CreateProviderRequest, FileAttachment, PendingToolApproval, Provider } from './types';
+import type { Bot, Conversation, ConversationSummary, CreateBotRequest, CreateProviderRequest, FileAttachment, PendingToolApproval, Provider } from './types';
 
-function botParticipantsOf(conv: Conversation | null): string[] {
+function botParticipantsOf(conv: { participants?: string[] | null } | null | undefined): string[] {
   if (!conv) return [];
   const participants = conv.participants ?? [];
   return participants.filter((p) => p !== 'user');
 }
 
+function summaryOf(conv: Conversation): ConversationSummary {
+  const last = conv.messages[conv.messages.length - 1];
+  return {
+    id: conv.id,
+    name: conv.name,
+    providerId: conv.providerId,
+    parentConversationId: conv.parentConversationId,
+    createdAtMillis: conv.createdAtMillis,
+    participants: conv.participants,
+    messageCount: conv.messages.length,
+    lastMessageAt: last?.timestampMillis ?? null,
+    preview: conv.messages.slice(-4),
+  };
+}
+
 export default function App() {
   const [providers, setProviders] = useState<Provider[]>([]);
   const [bots, setBots] = useState<Bot[]>([]);
-  const [conversations, setConversations] = useState<Conversation[]>([]);
+  const [conversations, setConversations] = useState<ConversationSummary[]>([]);
   const [activeId, setActiveId] = useState<string | null>(null);
+  const [activeConversation, setActiveConversation] = useState<Conversation | null>(null);
   const [selectedBot, setSelectedBot] = useState<string | null>(null);
   const [sending, setSending] = useState(false);
   const [notifyParticipants, setNotifyParticipants] = useState<string[]>([]);
@@ -24,8 +40,12 @@ export default function App() {
   const pollIntervalRef = useRef<ReturnType<typeof setInterval> | null>(null);
   const activeIdRef = useRef(activeId);
   const selectedBotRef = useRef(selectedBot);
+  const activeConversationRef = useRef(activeConversation);
+  // Messages of the active conversation known to be persisted; anything after them is an optimistic local echo.
+  const confirmedCountRef = useRef(0);
   activeIdRef.current = activeId;
   selectedBotRef.current = selectedBot;
+  activeConversationRef.current = activeConversation;
 
   const setInputDraft = (value: string) => {
     inputDraftRef.current = value;
@@ -43,9 +63,40 @@ export default function App() {
   }, [selectedBot]);
 
   useEffect(() => {
+    setActiveConversation(null);
+    confirmedCountRef.current = 0;
+    if (activeId == null) return;
+    let cancelled = false;
+    api.fetchConversation(activeId)
+      .then((conv) => {
+        if (cancelled) return;
+        confirmedCountRef.current = conv.messages.length;
+        setActiveConversation(conv);
+      })
+      .catch(() => {});
+    return () => {
+      cancelled = true;
+    };
+  }, [activeId]);
+
+  useEffect(() => {
+    const syncActiveMessages = () => {
+      const current = activeConversationRef.current;
+      if (!current) return;
+      api.fetchMessages(current.id, confirmedCountRef.current)
+        .then((page) => {
+          const latest = activeConversationRef.current;
+          if (page.messages.length === 0 || !latest || latest.id !== current.id) return;
+          if (confirmedCountRef.current !== page.from) return;
+          confirmedCountRef.current = page.from + page.messages.length;
+          setActiveConversation({ ...latest, messages: [...latest.messages.slice(0, page.from), ...page.messages] });
+        })
+        .catch(() => {});
+    };
     const poll = () => {
       const participant = selectedBotRef.current ?? 'user';
       api.fetchConversations(participant).then((list) => setConversations([...list]));
+      syncActiveMessages();
       api.fetchPendingApprovals().then((list) =>
         setPendingApprovals(list.map((a) => ({ approvalId: a.approvalId, toolName: a.toolName, toolInput: a.toolInput })))
       );
@@ -56,8 +107,6 @@ export default function App() {
     };
   }, []);
 
-  const activeConversation = conversations.find((c) => c.id === activeId) ?? null;
-
   const displayConversations = conversations;
   const headerTitle = selectedBot ?? 'User';
 
@@ -68,7 +117,7 @@ export default function App() {
   }, [selectedBot, activeId, displayConversations]);
 
   useEffect(() => {
-    setNotifyParticipants(botParticipantsOf(activeConversation));
+    setNotifyParticipants(botParticipantsOf(conversations.find((c) => c.id === activeId)));
   }, [activeId]);
 
   const handleAddProvider = async (req: CreateProviderRequest) => {
@@ -83,9 +132,10 @@ export default function App() {
 
   const handleCreateConversation = async (name: string, providerId?: string | null, participants?: string[]) => {
     const conv = await api.createConversation(name, providerId, participants);
+    const summary = summaryOf(conv);
     setConversations((prev) => {
       const exists = prev.some((c) => c.id === conv.id);
-      return exists ? prev.map((c) => (c.id === conv.id ? conv : c)) : [...prev, conv];
+      return exists ? prev.map((c) => (c.id === conv.id ? summary : c)) : [...prev, summary];
     });
     setActiveId(conv.id);
     setNotifyParticipants(botParticipantsOf(conv));
@@ -93,7 +143,12 @@ export default function App() {
 
   const handleAddParticipant = async (conversationId: string, participantName: string) => {
     const updated = await api.addParticipant(conversationId, participantName);
-    setConversations((prev) => prev.map((c) => (c.id === conversationId ? updated : c)));
+    setConversations((prev) =>
+      prev.map((c) => (c.id === conversationId ? { ...c, participants: updated.participants } : c)),
+    );
+    setActiveConversation((prev) =>
+      prev && prev.id === conversationId ? { ...prev, participants: updated.participants } : prev,
+    );
     if (conversationId === activeId) {
       setNotifyParticipants(botParticipantsOf(updated));
     }
@@ -104,6 +159,9 @@ export default function App() {
     setConversations((prev) =>
       prev.map((c) => (c.id === id ? { ...c, providerId: updated.providerId ?? null } : c)),
     );
+    setActiveConversation((prev) =>
+      prev && prev.id === id ? { ...prev, providerId: updated.providerId ?? null } : prev,
+    );
   };
 
 
@@ -118,12 +176,10 @@ export default function App() {
     inputDraftRef.current = '';
     setDraftVersion((v) => v + 1);
     const files = attachments ?? [];
-    setConversations((prev) =>
-      prev.map((c) =>
-        c.id === activeId
-          ? { ...c, messages: [...c.messages, { participant: 'user', content: message, timestampMillis: Date.now(), files }] }
-          : c,
-      ),
+    setActiveConversation((prev) =>
+      prev && prev.id === activeId
+        ? { ...prev, messages: [...prev.messages, { participant: 'user', content: message, timestampMillis: Date.now(), files }] }
+        : prev,
     );
     setSending(true);
     const fileIds = files.map((f) => f.id);
@@ -1,4 +1,4 @@
-import type { Bot, Conversation, CreateBotRequest, CreateProviderRequest, FileAttachment, Provider } from './types';
+import type { Bot, Conversation, ConversationSummary, CreateBotRequest, CreateProviderRequest, FileAttachment, MessagePage, Provider } from './types';
 
 const JSON_HEADERS = { 'Content-Type': 'application/json' };
 
@@ -20,7 +20,7 @@ export async function deleteProvider(id: string): Promise<void> {
   await fetch(`/api/providers/${id}`, { method: 'DELETE' });
 }
 
-export async function fetchConversations(participant?: string | null): Promise<Conversation[]> {
+export async function fetchConversations(participant?: string | null): Promise<ConversationSummary[]> {
   const url = participant != null && participant !== ''
     ? `/api/conversations?participant=${encodeURIComponent(participant)}`
     : '/api/conversations';
@@ -28,6 +28,18 @@ export async function fetchConversations(participant?: string | null): Promise<C
   return res.json();
 }
 
+export async function fetchConversation(id: string): Promise<Conversation> {
+  const res = await fetch(`/api/conversations/${encodeURIComponent(id)}`);
+  if (!res.ok) throw new Error(await res.text() || res.statusText);
+  return res.json();
+}
+
+export async function fetchMessages(id: string, from: number, limit = 100): Promise<MessagePage> {
+  const res = await fetch(`/api/conversations/${encodeURIComponent(id)}/messages?from=${from}&limit=${limit}`);
+  if (!res.ok) throw new Error(await res.text() || res.statusText);
+  return res.json();
+}
+
 export async function createConversation(
   name: string,
   providerId?: string | null,
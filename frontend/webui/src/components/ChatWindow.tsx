@@ -275,7 +275,7 @@ function MessageEntry({
 }) {
   const participant = getMessageParticipant(msg);
   const hasParts = 'parts' in msg && msg.parts != null;
-  const userParts = participant === 'user' && 'content' in msg ? parseUserParts(msg.content) : null;
+  const userParts = participant === 'user' && 'content' in msg ? userPartsOf(msg) : null;
   const [collapsed, setCollapsed] = useState(participant === 'tool' && !hasParts);
   const content = 'content' in msg ? msg.content : '';
   const preview = content.slice(0, PREVIEW_LENGTH) + (content.length > PREVIEW_LENGTH ? '…' : '');
@@ -423,6 +423,20 @@ function parseStructuredContent(content: string): StreamPart[] | null {
   }
 }
 
+// Messages keep their identity across renders, so each message's structured content is parsed once.
+const structuredPartsCache = new WeakMap<ChatMessage, StreamPart[] | null>();
+const userPartsCache = new WeakMap<ChatMessage, UserPart[] | null>();
+
+function structuredPartsOf(msg: ChatMessage): StreamPart[] | null {
+  if (!structuredPartsCache.has(msg)) structuredPartsCache.set(msg, parseStructuredContent(msg.content));
+  return structuredPartsCache.get(msg) ?? null;
+}
+
+function userPartsOf(msg: ChatMessage): UserPart[] | null {
+  if (!userPartsCache.has(msg)) userPartsCache.set(msg, parseUserParts(msg.content));
+  return userPartsCache.get(msg) ?? null;
+}
+
 function filterParts(parts: StreamPart[], hideToolsAndThinking: boolean): StreamPart[] {
   if (!hideToolsAndThinking) return parts;
   const answerParts = parts.filter((p) => p.type === 'answer');
@@ -438,7 +452,7 @@ function getDisplayMessages(
 ): DisplayMessage[] {
   return messages.map((msg) => {
     if (getMessageParticipant(msg) !== 'user' && getMessageParticipant(msg) !== 'tool') {
-      const parts = parseStructuredContent(msg.content);
+      const parts = structuredPartsOf(msg);
       if (parts) return { participant: msg.participant, parts: filterParts(parts, hideToolsAndThinking) };
     }
     return msg;
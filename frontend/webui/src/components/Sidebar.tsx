@@ -1,10 +1,10 @@
 import { useState } from 'react';
-import type { Bot, Conversation, CreateBotRequest, CreateProviderRequest, Provider } from '../types';
+import type { Bot, ConversationSummary, CreateBotRequest, CreateProviderRequest, Provider } from '../types';
 
 interface SidebarProps {
   providers: Provider[];
   bots: Bot[];
-  conversations: Conversation[];
+  conversations: ConversationSummary[];
   activeId: string | null;
   selectedBot: string | null;
   onSelectBot: (botName: string | null) => void;
@@ -16,7 +16,7 @@ interface SidebarProps {
   onAddParticipant: (conversationId: string, participantName: string) => void;
 }
 
-type TreeNode = Conversation & { children: TreeNode[] };
+type TreeNode = ConversationSummary & { children: TreeNode[] };
 
 function formatCreationTime(ms: number): string {
   const d = new Date(ms);
@@ -39,7 +39,7 @@ function byNewestFirst(a: { createdAtMillis?: number | null }, b: { createdAtMil
   return tb - ta;
 }
 
-function buildTree(conversations: Conversation[]): TreeNode[] {
+function buildTree(conversations: ConversationSummary[]): TreeNode[] {
   const sorted = [...conversations].sort(byNewestFirst);
   const byId = new Map<string, TreeNode>();
   for (const c of sorted) {
@@ -157,7 +157,7 @@ export default function Sidebar({
               </span>
             )}
           </span>
-          <span className="text-xs text-text-dim min-w-5 text-right shrink-0">{node.messages.length}</span>
+          <span className="text-xs text-text-dim min-w-5 text-right shrink-0">{node.messageCount}</span>
           <button
             className="bg-transparent border-0 text-text-dim text-base cursor-pointer py-0 px-1 leading-none transition-colors duration-150 hover:text-danger"
             onClick={(e) => {
@@ -177,7 +177,7 @@ export default function Sidebar({
         )}
         {!hasChildren && !isSub && expanded.has(node.id) && (
           <div className="py-1 px-3 pb-2 pl-8 flex flex-col gap-0.5 bg-bg-sidebar">
-            {node.messages.slice(-4).map((m, i) => (
+            {node.preview.map((m, i) => (
               <div key={i} className="flex gap-1.5 text-xs leading-snug">
                 <span className="text-text-dim shrink-0 font-semibold uppercase text-[0.625rem] mt-px">{m.participant}</span>
                 <span className="text-text overflow-hidden text-ellipsis whitespace-nowrap">
@@ -186,7 +186,7 @@ export default function Sidebar({
                 </span>
               </div>
             ))}
-            {node.messages.length === 0 && (
+            {node.messageCount === 0 && (
               <span className="text-xs text-text-dim">No messages</span>
             )}
           </div>
@@ -307,14 +307,24 @@ function ProviderButton({
   const [apiKey, setApiKey] = useState('');
   const [baseUrl, setBaseUrl] = useState('');
   const [model, setModel] = useState('');
+  const [maxContextTokens, setMaxContextTokens] = useState('');
 
   const handleSubmit = () => {
     if (!name || !apiKey) return;
-    onAdd({ name, type, apiKey, baseUrl: baseUrl || undefined, model: model || undefined });
+    const tokens = parseInt(maxContextTokens, 10);
+    onAdd({
+      name,
+      type,
+      apiKey,
+      baseUrl: baseUrl || undefined,
+      model: model || undefined,
+      maxContextTokens: tokens > 0 ? tokens : undefined,
+    });
     setName('');
     setApiKey('');
     setBaseUrl('');
     setModel('');
+    setMaxContextTokens('');
     onToggle();
   };
 
@@ -366,6 +376,16 @@ function ProviderButton({
               className="p-1.5 px-2.5 bg-bg-input text-text border border-border rounded-lg text-[0.8125rem] outline-none focus:border-accent"
             />
           )}
+          {type !== 'DALLE_3' && (
+            <input
+              placeholder="History token budget (optional)"
+              type="number"
+              min={1}
+              value={maxContextTokens}
+              onChange={(e) => setMaxContextTokens(e.target.value)}
+              className="p-1.5 px-2.5 bg-bg-input text-text border border-border rounded-lg text-[0.8125rem] outline-none focus:border-accent"
+            />
+          )}
           <button
             className="py-1.5 px-3 bg-accent text-white border-0 rounded-lg cursor-pointer text-[0.8125rem] transition-colors duration-150 hover:bg-accent-hover"
             onClick={handleSubmit}
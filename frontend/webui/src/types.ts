@@ -21,12 +21,31 @@ export interface Conversation {
   participants?: string[] | null;
 }
 
+export interface ConversationSummary {
+  id: string;
+  name: string;
+  providerId: string | null;
+  parentConversationId?: string | null;
+  createdAtMillis?: number | null;
+  participants?: string[] | null;
+  messageCount: number;
+  lastMessageAt?: number | null;
+  preview: ChatMessage[];
+}
+
+export interface MessagePage {
+  from: number;
+  total: number;
+  messages: ChatMessage[];
+}
+
 export interface Provider {
   id: string;
   name: string;
   type: 'OPENAI' | 'ANTHROPIC' | 'OLLAMA' | 'GEMINI' | 'DALLE_3';
   baseUrl: string;
   model: string;
+  maxContextTokens?: number | null;
 }
 
 export interface CreateProviderRequest {
@@ -35,6 +54,7 @@ export interface CreateProviderRequest {
   apiKey: string;
   baseUrl?: string;
   model?: string;
+  maxContextTokens?: number;
 }
 
 export interface Bot {
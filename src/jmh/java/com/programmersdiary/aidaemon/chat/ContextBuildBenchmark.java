@@ -0,0 +1,72 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.files.AttachmentProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-turn prompt assembly. {@code nextTurn} is the steady state, where history converted for the previous
+ * turn is reused; {@code firstTurn} converts the whole history, as after a restart or for an uncached
+ * conversation. Run with {@code -prof gc} for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextBuildBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int messages;
+
+    @Param({"chars", "tokens"})
+    String budget;
+
+    private List<ChatMessage> history;
+    private ChatContextBuilder builder;
+    private ContextBudget contextBudget;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var files = new SyntheticConversations.InMemoryFileStorage();
+        history = SyntheticConversations.messages(messages, files);
+        var skills = SyntheticConversations.skillsService(50);
+        builder = new ChatContextBuilder(SyntheticConversations.botService(), skills, new AttachmentProcessor(files),
+                null, MemoryBudget.DEFAULT);
+        contextBudget = "tokens".equals(budget)
+                ? ContextBudget.tokens(32_000, HeuristicTokenizer.INSTANCE)
+                : ContextBudget.chars(128_000);
+        nextTurn();
+    }
+
+    @Benchmark
+    public List<Message> nextTurn() {
+        return builder.buildMessages(history, SyntheticConversations.BOT, contextBudget, "Be helpful.", "user",
+                "conversation-1");
+    }
+
+    @Benchmark
+    public List<Message> firstTurn() {
+        return builder.buildMessages(history, SyntheticConversations.BOT, contextBudget, "Be helpful.", "user", null);
+    }
+
+    @Benchmark
+    public List<ChatMessage> trimChatHistory() {
+        return ContextWindowTrimmer.trimChatHistory(history, 128_000);
+    }
+}
@@ -0,0 +1,85 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.skills.ChatTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tool-side hot paths: paging older messages through {@code retrieveOlderMessages} and serializing a
+ * finished reply with {@link ChatResult#assistantContent()}. The conversation lives in a repository under a
+ * temporary directory and stays cached, so paging measures the in-memory path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryToolsBenchmark {
+
+    private static final String CONVERSATION_ID = "benchmark";
+
+    @Param({"1000", "10000", "100000"})
+    int messages;
+
+    private Path configDir;
+    private ConversationRepository repository;
+    private ChatTools tools;
+    private ChatResult reply;
+    private int middle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        configDir = Files.createTempDirectory("aidaemon-benchmark");
+        repository = new ConversationRepository(configDir.toString());
+        repository.load();
+        var history = SyntheticConversations.messages(messages, new SyntheticConversations.InMemoryFileStorage());
+        repository.save(new Conversation(CONVERSATION_ID, "benchmark", "provider", new ArrayList<>(history),
+                System.currentTimeMillis(), List.of("user", SyntheticConversations.BOT)));
+        tools = new ChatTools(null, null, "provider", repository, CONVERSATION_ID, 32_000);
+        reply = SyntheticConversations.reply(60);
+        middle = messages / 3;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.shutdown();
+        try (var paths = Files.walk(configDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String retrieveOlderMessages() {
+        return tools.retrieveOlderMessages(middle, null, null);
+    }
+
+    @Benchmark
+    public String retrieveOlderMessagesByCursor() {
+        return tools.retrieveOlderMessages(null, null, middle + "-" + (middle + 200));
+    }
+
+    @Benchmark
+    public String assistantContent() {
+        return reply.assistantContent();
+    }
+}
@@ -0,0 +1,70 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one message log record per codec: a structured assistant reply with reasoning, tool
+ * and answer parts, and a plain user message. Run with {@code -prof gc} for allocation per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"smile", "json"})
+    String codecName;
+
+    private MessageCodec codec;
+    private ChatMessage reply;
+    private ChatMessage userMessage;
+    private byte[] replyRecord;
+    private byte[] userRecord;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        codec = MessageCodec.named(codecName);
+        reply = new ChatMessage(SyntheticConversations.BOT, SyntheticConversations.reply(60).assistantContent(),
+                System.currentTimeMillis(), List.of());
+        userMessage = ChatMessage.of("user", "please roll back the staging deployment and check the config");
+        replyRecord = codec.encode(reply);
+        userRecord = codec.encode(userMessage);
+    }
+
+    @Benchmark
+    public byte[] encodeReply() throws IOException {
+        return codec.encode(reply);
+    }
+
+    @Benchmark
+    public ChatMessage decodeReply() throws IOException {
+        return codec.decode(replyRecord);
+    }
+
+    @Benchmark
+    public byte[] encodeUserMessage() throws IOException {
+        return codec.encode(userMessage);
+    }
+
+    @Benchmark
+    public ChatMessage decodeUserMessage() throws IOException {
+        return codec.decode(userRecord);
+    }
+}
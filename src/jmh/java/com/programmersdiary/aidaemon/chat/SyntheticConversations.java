@@ -0,0 +1,191 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmersdiary.aidaemon.bot.BotService;
+import com.programmersdiary.aidaemon.files.FileAttachment;
+import com.programmersdiary.aidaemon.files.FileStorageService;
+import com.programmersdiary.aidaemon.skills.MemoryIndex;
+import com.programmersdiary.aidaemon.skills.SkillsService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic conversations for the benchmarks: plain user messages, user messages with inline file parts
+ * or attached files, structured bot replies with reasoning and tool parts, and tool log messages. Files are
+ * served from memory, so nothing touches the disk or the network.
+ */
+final class SyntheticConversations {
+
+    static final String BOT = "botA";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String[] WORDS = ("deploy cluster staging rollback config memory context window token "
+            + "budget history summary attachment provider model request latency cache prompt tool shell file "
+            + "review branch commit test build error retry queue index search").split(" ");
+
+    private SyntheticConversations() {
+    }
+
+    static List<ChatMessage> messages(int count, InMemoryFileStorage files) {
+        var random = new Random(42);
+        var messages = new ArrayList<ChatMessage>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(switch (i % 8) {
+                case 1, 5 -> botReply(random, i);
+                case 2 -> ChatMessage.of("tool", "{\"tool\":\"shell\",\"output\":\"" + sentence(random, 30) + "\"}");
+                case 3 -> userParts(random, files.add("notes-" + i + ".md", "text/markdown", sentence(random, 200)));
+                case 7 -> ChatMessage.ofWithFiles("user", sentence(random, 15),
+                        List.of(files.add("log-" + i + ".txt", "text/plain", sentence(random, 400))));
+                default -> ChatMessage.of("user", sentence(random, 25));
+            });
+        }
+        return messages;
+    }
+
+    /** A reply as {@link ChatResult#assistantContent()} stores it, with {@code parts} reasoning/tool/answer rounds. */
+    static ChatResult reply(int parts) {
+        var random = new Random(7);
+        var chunks = new ArrayList<StreamChunk>(parts);
+        for (int i = 0; i < parts; i++) {
+            chunks.add(new StreamChunk(switch (i % 3) {
+                case 0 -> StreamChunk.TYPE_REASONING;
+                case 1 -> StreamChunk.TYPE_TOOL;
+                default -> StreamChunk.TYPE_ANSWER;
+            }, sentence(random, 40)));
+        }
+        return new ChatResult(sentence(random, 40), chunks);
+    }
+
+    private static ChatMessage botReply(Random random, int index) {
+        var parts = List.of(
+                Map.of("type", StreamChunk.TYPE_REASONING, "content", sentence(random, 60)),
+                Map.of("type", StreamChunk.TYPE_TOOL, "content", "{\"tool\":\"readFile\",\"output\":\""
+                        + sentence(random, 40) + "\"}"),
+                Map.of("type", StreamChunk.TYPE_ANSWER, "content", "Reply " + index + ": " + sentence(random, 50)));
+        return ChatMessage.of(BOT, json(Map.of("parts", parts)));
+    }
+
+    private static ChatMessage userParts(Random random, FileAttachment file) {
+        var parts = List.of(
+                Map.of("type", "text", "content", sentence(random, 20)),
+                Map.of("type", "file", "id", file.id(), "name", file.name(), "mimeType", file.mimeType()));
+        return ChatMessage.of("user", json(Map.of("user_parts", parts)));
+    }
+
+    private static String sentence(Random random, int words) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String json(Object value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static BotService botService() {
+        return new BotService(null, new ContextConfig("", 0, 0, "", 20, 4000), null, null, null) {
+            @Override
+            public String loadSoul(String name) {
+                return "You are " + name + ", a concise assistant.";
+            }
+        };
+    }
+
+    static SkillsService skillsService(int memoryEntries) {
+        var memory = new LinkedHashMap<String, String>();
+        var random = new Random(3);
+        for (int i = 0; i < memoryEntries; i++) {
+            memory.put("fact " + i + " " + WORDS[i % WORDS.length], sentence(random, 12));
+        }
+        var index = MemoryIndex.of(memory);
+        return new SkillsService(System.getProperty("java.io.tmpdir")) {
+            @Override
+            public Map<String, String> readMemory() {
+                return new LinkedHashMap<>(memory);
+            }
+
+            @Override
+            public MemoryIndex memoryIndex() {
+                return index;
+            }
+        };
+    }
+
+    /** {@link FileStorageService} backed by a map instead of the conversations directory. */
+    static final class InMemoryFileStorage extends FileStorageService {
+
+        private final Map<String, FileAttachment> attachments = new HashMap<>();
+        private final Map<String, byte[]> contents = new HashMap<>();
+
+        InMemoryFileStorage() {
+            super(System.getProperty("java.io.tmpdir"));
+        }
+
+        FileAttachment add(String name, String mimeType, String content) {
+            var attachment = new FileAttachment("file-" + attachments.size(), name, mimeType);
+            attachments.put(attachment.id(), attachment);
+            contents.put(attachment.id(), content.getBytes(StandardCharsets.UTF_8));
+            return attachment;
+        }
+
+        @Override
+        public FileAttachment store(String conversationId, String originalName, String mimeType, byte[] data) {
+            var attachment = add(originalName, mimeType, "");
+            contents.put(attachment.id(), data);
+            return attachment;
+        }
+
+        @Override
+        public byte[] getBytes(String id) throws IOException {
+            return content(id).clone();
+        }
+
+        @Override
+        public FileAttachment getAttachment(String id) throws IOException {
+            var attachment = attachments.get(id);
+            if (attachment == null) throw new IOException("File not found: " + id);
+            return attachment;
+        }
+
+        @Override
+        public long size(String id) throws IOException {
+            return content(id).length;
+        }
+
+        @Override
+        public InputStream openStream(String id) throws IOException {
+            return new ByteArrayInputStream(content(id));
+        }
+
+        @Override
+        public byte[] readRange(String conversationId, String id, long offset, int length) throws IOException {
+            var content = content(id);
+            if (offset >= content.length || length <= 0) return new byte[0];
+            return Arrays.copyOfRange(content, (int) offset, (int) Math.min(content.length, offset + length));
+        }
+
+        private byte[] content(String id) throws IOException {
+            var content = contents.get(id);
+            if (content == null) throw new IOException("File not found: " + id);
+            return content;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.programmersdiary.aidaemon.provider;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first token from an OpenAI-compatible endpoint served locally, with the provider's
+ * model taken from the {@link ChatModelFactory} cache versus built anew for the request as before. The
+ * endpoint answers at once, so the difference is what building the model, its API client and HTTP clients
+ * costs on every turn; over TLS to a real provider, reused connections save the handshake as well. The reply
+ * is a single token, so it is read to the end to leave the connection reusable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatModelFactoryBenchmark {
+
+    private static final String CHUNK = """
+            data: {"id":"1","object":"chat.completion.chunk","created":0,"model":"gpt-4o",\
+            "choices":[{"index":0,"delta":{"role":"assistant","content":"Hello"},"finish_reason":null}]}
+
+            data: {"id":"1","object":"chat.completion.chunk","created":0,"model":"gpt-4o",\
+            "choices":[{"index":0,"delta":{},"finish_reason":"stop"}]}
+
+            data: [DONE]
+
+            """;
+
+    private HttpServer server;
+    private ChatModelFactory factory;
+    private ProviderConfig config;
+    private Prompt prompt;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            var body = CHUNK.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        factory = new ChatModelFactory();
+        config = new ProviderConfig("benchmark", "benchmark", ProviderType.OPENAI, "key",
+                "http://127.0.0.1:" + server.getAddress().getPort(), "gpt-4o", null);
+        prompt = new Prompt(List.of(new UserMessage("Hi")), factory.promptOptions(config, List.of()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public ChatResponse cachedModel() {
+        return firstToken(factory.create(config));
+    }
+
+    @Benchmark
+    public ChatResponse modelPerRequest() {
+        return firstToken(factory.build(config));
+    }
+
+    private ChatResponse firstToken(ChatModel model) {
+        return model.stream(prompt).collectList().block().getFirst();
+    }
+}
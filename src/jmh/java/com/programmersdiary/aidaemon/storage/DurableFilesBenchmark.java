@@ -0,0 +1,67 @@
+package com.programmersdiary.aidaemon.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a crash-safe {@link DurableFiles#write} (temp file, fsync, rename, directory fsync) against the
+ * plain in-place {@link Files#write} it replaced, for the sizes of a header, a config list and a memory
+ * file. The numbers depend on the disk; run it on the machine that hosts the config directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurableFilesBenchmark {
+
+    @Param({"256", "8192", "262144"})
+    int bytes;
+
+    private Path dir;
+    private Path target;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("aidaemon-benchmark");
+        target = dir.resolve("data.json");
+        content = "{\"k\":\"%s\"}".formatted("x".repeat(Math.max(0, bytes - 8))).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void durableWrite() throws IOException {
+        DurableFiles.write(target, content);
+    }
+
+    @Benchmark
+    public void inPlaceWrite() throws IOException {
+        Files.write(target, content);
+    }
+}
@@ -6,9 +6,7 @@ import com.programmersdiary.aidaemon.chat.ChatResult;
 import com.programmersdiary.aidaemon.chat.ChatService;
 import com.programmersdiary.aidaemon.chat.ContextConfig;
 import com.programmersdiary.aidaemon.chat.StreamRequestMetadata;
-import com.programmersdiary.aidaemon.files.FileStorageService;
-import com.programmersdiary.aidaemon.skills.SkillsService;
-import org.springframework.ai.chat.messages.Message;
+import com.programmersdiary.aidaemon.files.FileAttachment;
 
 import java.util.List;
 
@@ -21,10 +19,10 @@ public class Bot {
     private final ChatService chatService;
 
     Bot(String name, BotService botService, ContextConfig contextConfig, ChatService chatService,
-        SkillsService skillsService, FileStorageService fileStorageService) {
+        ChatContextBuilder contextBuilder) {
         this.name = name;
         this.botService = botService;
-        this.contextBuilder = new ChatContextBuilder(botService, skillsService, fileStorageService);
+        this.contextBuilder = contextBuilder;
         this.contextConfig = contextConfig;
         this.chatService = chatService;
     }
@@ -35,13 +33,16 @@ public class Bot {
 
     public ChatResult chat(String providerId, List<ChatMessage> messages, String conversationId, String senderIdentity) {
         var meta = streamRequestMetadata(messages, conversationId);
-        var contextMessages = buildContext(messages, senderIdentity, conversationId);
-        return chatService.streamAndCollect(providerId, contextMessages, meta);
+        var context = contextBuilder.buildMessagesAsync(messages, name, botService.contextBudgetFor(providerId),
+                contextConfig.systemInstructions(), senderIdentity, conversationId);
+        var result = chatService.streamAndCollect(providerId, context, meta);
+        contextBuilder.summarizeDropped(conversationId, name, providerId);
+        return result;
     }
 
-    public List<Message> buildContext(List<ChatMessage> messages, String senderIdentity, String conversationId) {
-        return contextBuilder.buildMessages(messages, name, contextConfig.charsLimit(),
-                contextConfig.systemInstructions(), senderIdentity, conversationId);
+    /** Starts reading this bot's soul, memory and the given attachments ahead of its next turn. */
+    public void prefetch(List<FileAttachment> files) {
+        contextBuilder.prefetch(name, files);
     }
 
     public StreamRequestMetadata streamRequestMetadata(List<ChatMessage> messages, String conversationId) {
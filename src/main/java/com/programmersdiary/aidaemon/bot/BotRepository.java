@@ -9,12 +9,21 @@ import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
 public class BotRepository {
 
     private final Path botsDir;
+    private final Map<String, Soul> souls = new ConcurrentHashMap<>();
+
+    /** SOUL.md as last read, reused while the file's modification time and size stay the same. */
+    private record Soul(FileTime modified, long size, String text) {
+    }
 
     public BotRepository(@Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir) {
         this.botsDir = Path.of(configDir, "bots");
@@ -64,11 +73,18 @@ public class BotRepository {
             throw new IllegalArgumentException("SOUL.md not found for bot: " + name);
         }
         try {
-            return Files.readString(soulPath, StandardCharsets.UTF_8);
+            var attributes = Files.readAttributes(soulPath, BasicFileAttributes.class);
+            var cached = souls.get(name);
+            if (cached != null && cached.modified().equals(attributes.lastModifiedTime())
+                    && cached.size() == attributes.size()) {
+                return cached.text();
+            }
+            var text = Files.readString(soulPath, StandardCharsets.UTF_8);
+            souls.put(name, new Soul(attributes.lastModifiedTime(), attributes.size(), text));
+            return text;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
 }
-
@@ -1,9 +1,10 @@
 package com.programmersdiary.aidaemon.bot;
 
+import com.programmersdiary.aidaemon.chat.ChatContextBuilder;
 import com.programmersdiary.aidaemon.chat.ChatService;
+import com.programmersdiary.aidaemon.chat.ContextBudget;
 import com.programmersdiary.aidaemon.chat.ContextConfig;
-import com.programmersdiary.aidaemon.files.FileStorageService;
-import com.programmersdiary.aidaemon.skills.SkillsService;
+import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,20 +15,26 @@ public class BotService {
     private final BotRepository repository;
     private final ContextConfig contextConfig;
     private final ChatService chatService;
-    private final SkillsService skillsService;
-    private final FileStorageService fileStorageService;
+    private final ProviderConfigRepository providerConfigRepository;
+    private final ChatContextBuilder contextBuilder;
 
     public BotService(BotRepository repository, ContextConfig contextConfig, ChatService chatService,
-                      SkillsService skillsService, FileStorageService fileStorageService) {
+                      ProviderConfigRepository providerConfigRepository, ChatContextBuilder contextBuilder) {
         this.repository = repository;
         this.contextConfig = contextConfig;
         this.chatService = chatService;
-        this.skillsService = skillsService;
-        this.fileStorageService = fileStorageService;
+        this.providerConfigRepository = providerConfigRepository;
+        this.contextBuilder = contextBuilder;
     }
 
+    /** Bots share one context builder so converted history is reused across turns. */
     public Bot getBot(String name) {
-        return new Bot(name, this, contextConfig, chatService, skillsService, fileStorageService);
+        return new Bot(name, this, contextConfig, chatService, contextBuilder);
+    }
+
+    ContextBudget contextBudgetFor(String providerId) {
+        var provider = providerId != null ? providerConfigRepository.findById(providerId).orElse(null) : null;
+        return contextConfig.budgetFor(provider);
     }
 
     public List<BotDefinition> listBots() {
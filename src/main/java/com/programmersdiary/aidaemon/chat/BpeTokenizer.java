@@ -0,0 +1,104 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Byte-level BPE as used by OpenAI models, with merge ranks read from a tiktoken file
+ * ({@code <base64 token> <rank>} per line, e.g. {@code cl100k_base.tiktoken}). Byte sequences are held as
+ * ISO-8859-1 strings, which map each byte to one char.
+ */
+final class BpeTokenizer implements Tokenizer {
+
+    private static final int NO_RANK = -1;
+
+    private final Map<String, Integer> ranks;
+
+    BpeTokenizer(Map<String, Integer> ranks) {
+        this.ranks = Map.copyOf(ranks);
+    }
+
+    static BpeTokenizer load(Path ranksFile) throws IOException {
+        var ranks = new HashMap<String, Integer>();
+        var decoder = Base64.getDecoder();
+        for (var line : Files.readAllLines(ranksFile, StandardCharsets.US_ASCII)) {
+            int space = line.indexOf(' ');
+            if (space <= 0) continue;
+            var token = new String(decoder.decode(line.substring(0, space)), StandardCharsets.ISO_8859_1);
+            ranks.put(token, Integer.parseInt(line.substring(space + 1).trim()));
+        }
+        if (ranks.isEmpty()) throw new IOException("No BPE ranks in " + ranksFile);
+        return new BpeTokenizer(ranks);
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        var matcher = PIECES.matcher(text);
+        while (matcher.find()) {
+            var piece = new String(matcher.group().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            tokens += ranks.containsKey(piece) ? 1 : mergedLength(piece);
+        }
+        return tokens;
+    }
+
+    /**
+     * Repeatedly merges the adjacent pair with the lowest rank, leftmost first; returns how many parts remain.
+     * Parts are a linked list over their start offsets and candidate pairs sit in a queue keyed by rank and
+     * offset, so each merge only re-ranks its two neighbouring pairs. Queue entries whose rank no longer
+     * matches are stale and skipped.
+     */
+    private int mergedLength(String piece) {
+        int n = piece.length();
+        var next = new int[n];
+        var prev = new int[n];
+        var pairRanks = new int[n];
+        var queue = new PriorityQueue<Long>();
+        for (int i = 0; i < n; i++) {
+            next[i] = i + 1;
+            prev[i] = i - 1;
+        }
+        for (int i = 0; i < n; i++) {
+            pairRanks[i] = pairRank(piece, i, next);
+            if (pairRanks[i] != NO_RANK) queue.add(key(pairRanks[i], i));
+        }
+        int parts = n;
+        while (!queue.isEmpty()) {
+            long key = queue.poll();
+            int start = (int) key;
+            if (pairRanks[start] != (int) (key >>> 32)) continue;
+            int removed = next[start];
+            next[start] = next[removed];
+            if (next[start] < n) prev[next[start]] = start;
+            pairRanks[removed] = NO_RANK;
+            parts--;
+            pairRanks[start] = pairRank(piece, start, next);
+            if (pairRanks[start] != NO_RANK) queue.add(key(pairRanks[start], start));
+            int before = prev[start];
+            if (before >= 0) {
+                pairRanks[before] = pairRank(piece, before, next);
+                if (pairRanks[before] != NO_RANK) queue.add(key(pairRanks[before], before));
+            }
+        }
+        return parts;
+    }
+
+    /** Rank of the part starting at {@code start} merged with the one after it, or {@link #NO_RANK}. */
+    private int pairRank(String piece, int start, int[] next) {
+        int second = next[start];
+        if (second >= piece.length()) return NO_RANK;
+        var rank = ranks.get(piece.substring(start, next[second]));
+        return rank != null ? rank : NO_RANK;
+    }
+
+    private static long key(int rank, int start) {
+        return (long) rank << 32 | start;
+    }
+}
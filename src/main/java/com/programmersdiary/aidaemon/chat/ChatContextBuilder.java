@@ -1,69 +1,109 @@
 package com.programmersdiary.aidaemon.chat;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.programmersdiary.aidaemon.bot.BotService;
+import com.programmersdiary.aidaemon.files.AttachmentProcessor;
 import com.programmersdiary.aidaemon.files.FileAttachment;
 import com.programmersdiary.aidaemon.files.FileStorageService;
+import com.programmersdiary.aidaemon.skills.MemoryIndex;
 import com.programmersdiary.aidaemon.skills.SkillsService;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.content.Media;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.util.MimeType;
-import org.springframework.util.MimeTypeUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Builds the model prompt for a bot turn. History messages converted to Spring AI messages are cached per
+ * conversation and replying bot, so a turn only converts the messages appended since the previous one.
+ * With a {@link HistorySummarizer}, messages that no longer fit are represented by their rolling summary.
+ * <p>
+ * The prompt is laid out from most to least stable so providers can reuse a cached prefix: system
+ * instructions, the bot's soul, the conversation's standing instructions, memory, the history summary,
+ * the history, and only then the current message with the per-turn note. Memory too large for the
+ * {@link MemoryBudget} is narrowed to the entries relevant to the turn, which go into the per-turn note.
+ * <p>
+ * The soul, memory and attachments of the current message are read concurrently on virtual threads while
+ * the history is converted; {@link #prefetch} starts those reads as soon as a message lands.
+ * One instance is shared by all bots, so converted history is reused across turns.
+ */
+@Component
 public class ChatContextBuilder {
 
-    private static final List<String> REASONING_KEYS =
-            List.of("thinking", "reasoningContent", "reasoning_content", "reasoning");
+    static final int MAX_CACHED_HISTORIES = 64;
 
-    private static final Set<String> TEXT_SUBTYPES = Set.of(
-            "plain", "html", "xml", "csv", "markdown", "x-java-source", "x-java",
-            "javascript", "typescript", "x-python", "x-sh", "x-shellscript"
-    );
-
-    private static final Set<String> TEXT_APP_SUBTYPES = Set.of(
-            "json", "xml", "javascript", "typescript", "x-yaml", "yaml",
-            "toml", "x-toml", "graphql", "sql"
-    );
-
-    private static final Set<String> TEXT_EXTENSIONS = Set.of(
-            "java", "py", "js", "ts", "jsx", "tsx", "go", "rs", "kt", "cs",
-            "cpp", "c", "h", "rb", "php", "swift", "scala", "sh", "bash",
-            "txt", "md", "yaml", "yml", "toml", "ini", "xml", "html", "css",
-            "json", "sql", "graphql", "tf", "properties", "env"
-    );
+    private static final ExecutorService CONTEXT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
 
     private final BotService botService;
     private final SkillsService skillsService;
-    private final FileStorageService fileStorageService;
-    private final ObjectMapper objectMapper;
+    private final AttachmentProcessor attachments;
+    private final HistorySummarizer summarizer;
+    private final MemoryBudget memoryBudget;
+    private final Map<String, ConvertedHistory> histories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConvertedHistory> eldest) {
+            return size() > MAX_CACHED_HISTORIES;
+        }
+    };
 
     public ChatContextBuilder(BotService botService, SkillsService skillsService) {
         this(botService, skillsService, null);
     }
 
     public ChatContextBuilder(BotService botService, SkillsService skillsService, FileStorageService fileStorageService) {
+        this(botService, skillsService, fileStorageService != null ? new AttachmentProcessor(fileStorageService) : null,
+                null);
+    }
+
+    public ChatContextBuilder(BotService botService, SkillsService skillsService, AttachmentProcessor attachments,
+                              HistorySummarizer summarizer) {
+        this(botService, skillsService, attachments, summarizer, MemoryBudget.DEFAULT);
+    }
+
+    @Autowired
+    public ChatContextBuilder(@Lazy BotService botService, SkillsService skillsService, AttachmentProcessor attachments,
+                              HistorySummarizer summarizer, ContextConfig contextConfig) {
+        this(botService, skillsService, attachments, summarizer, contextConfig.memoryBudget());
+    }
+
+    public ChatContextBuilder(BotService botService, SkillsService skillsService, AttachmentProcessor attachments,
+                              HistorySummarizer summarizer, MemoryBudget memoryBudget) {
         this.botService = botService;
         this.skillsService = skillsService;
-        this.fileStorageService = fileStorageService;
-        this.objectMapper = new ObjectMapper();
+        this.attachments = attachments;
+        this.summarizer = summarizer;
+        this.memoryBudget = memoryBudget;
     }
 
     public List<Message> buildMessages(List<ChatMessage> messages, String replyingBotName,
                                       int conversationLimit, String systemInstructions,
                                       String senderIdentity, String conversationId) {
+        return buildMessages(messages, replyingBotName, ContextBudget.chars(conversationLimit), systemInstructions,
+                senderIdentity, conversationId);
+    }
+
+    public List<Message> buildMessages(List<ChatMessage> messages, String replyingBotName,
+                                      ContextBudget budget, String systemInstructions,
+                                      String senderIdentity, String conversationId) {
+        var soulRead = CompletableFuture.supplyAsync(() -> botService.loadSoul(replyingBotName), CONTEXT_EXECUTOR);
+        var memoryRead = CompletableFuture.supplyAsync(skillsService::memoryIndex, CONTEXT_EXECUTOR);
+        var window = historyWindow(messages, replyingBotName, budget, conversationId);
+        var attachmentsRead = prefetchAttachments(currentAttachments(window.current()));
+
         var springMessages = new ArrayList<Message>();
         springMessages.add(SystemMessage.builder().text(systemInstructions != null ? systemInstructions : "").metadata(cacheControl()).build());
-        var soul = botService.loadSoul(replyingBotName);
+        var soul = join(soulRead);
         if (soul != null && !soul.isBlank()) {
             springMessages.add(new SystemMessage(soul));
         }
@@ -72,50 +112,281 @@ public class ChatContextBuilder {
             sb.append("You are in conversation ").append(conversationId).append(". ");
         }
         sb.append("You MUST write your response using the writeToConversation tool. Do not respond with plain text — your message will not be saved otherwise.");
+        springMessages.add(new SystemMessage(sb.toString()));
+        var memory = join(memoryRead);
+        boolean wholeMemory = memory.fitsWithin(memoryBudget.maxEntries(), memoryBudget.maxChars());
+        if (wholeMemory) {
+            springMessages.addAll(memoryMessages(memory.entries()));
+        }
+        HistorySummary summary = null;
+        if (window.messageCount() > 1) {
+            summary = window.firstInContext() > 0 && summarizer != null ? summarizer.summaryFor(conversationId) : null;
+            if (summary != null) {
+                springMessages.add(new SystemMessage("Summary of conversation messages 0 to "
+                        + (summary.coveredMessages() - 1) + ":\n" + summary.text()));
+            }
+            if (window.lastInHistory() != null) {
+                springMessages.addAll(window.history());
+                springMessages.add(toCachedSpringMessage(window.lastInHistory(), replyingBotName));
+            }
+        }
+        var turnNote = turnNote(window, summary, senderIdentity);
+        if (!wholeMemory) {
+            turnNote = appendParagraph(turnNote, relevantMemoryNote(memory, window));
+        }
+        attachmentsRead.join();
+        var current = toCurrentMessage(window.current(), replyingBotName);
+        if (turnNote.isEmpty()) {
+            springMessages.add(current);
+        } else if (current instanceof UserMessage user) {
+            springMessages.add(withTurnNote(user, turnNote));
+        } else {
+            springMessages.add(new SystemMessage(turnNote));
+            springMessages.add(current);
+        }
+        return springMessages;
+    }
+
+    /** {@link #buildMessages} on a virtual thread, so the caller can prepare the provider call meanwhile. */
+    public CompletableFuture<List<Message>> buildMessagesAsync(List<ChatMessage> messages, String replyingBotName,
+                                                               ContextBudget budget, String systemInstructions,
+                                                               String senderIdentity, String conversationId) {
+        return CompletableFuture.supplyAsync(() -> buildMessages(messages, replyingBotName, budget,
+                systemInstructions, senderIdentity, conversationId), CONTEXT_EXECUTOR);
+    }
+
+    /**
+     * Starts reading what the bot's next turn needs, the soul, memory and the given attachments, into their
+     * caches. Returns at once; failures are left for the turn itself to report.
+     */
+    public void prefetch(String replyingBotName, List<FileAttachment> files) {
+        CONTEXT_EXECUTOR.execute(() -> {
+            try {
+                botService.loadSoul(replyingBotName);
+            } catch (RuntimeException ignored) {
+            }
+        });
+        CONTEXT_EXECUTOR.execute(() -> {
+            try {
+                skillsService.memoryIndex();
+            } catch (RuntimeException ignored) {
+            }
+        });
+        prefetchAttachments(files);
+    }
+
+    private CompletableFuture<Void> prefetchAttachments(List<FileAttachment> files) {
+        if (attachments == null || files.isEmpty()) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.allOf(files.stream()
+                .map(file -> CompletableFuture.runAsync(() -> {
+                    try {
+                        attachments.prepare(file);
+                    } catch (IOException | RuntimeException ignored) {
+                        // the file is referenced by name when the message is built
+                    }
+                }, CONTEXT_EXECUTOR))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private static List<FileAttachment> currentAttachments(ChatMessage message) {
+        if (!isUserParts(message.content())) return message.files();
+        return message.parts().stream()
+                .filter(MessagePart.File.class::isInstance)
+                .map(part -> ((MessagePart.File) part).file())
+                .toList();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Facts that change from turn to turn. Sent inside the current user message, marked off from what the
+     * sender wrote: providers such as Anthropic hoist every system message into the cached system block, so
+     * a per-turn system message would invalidate the cache for the whole prompt, and a separate user message
+     * would make two user turns in a row. Only when the current message is not a user message does the note
+     * go before it as a system message.
+     */
+    private static String turnNote(HistoryWindow window, HistorySummary summary, String senderIdentity) {
+        var sb = new StringBuilder();
         if (senderIdentity != null && !senderIdentity.isBlank() && !"user".equalsIgnoreCase(senderIdentity)) {
-            sb.append(" You were triggered by bot \"").append(senderIdentity).append("\".")
+            sb.append("You were triggered by bot \"").append(senderIdentity).append("\".")
               .append(" Only continue the conversation if it makes sense — do not loop indefinitely.");
         }
-        springMessages.add(new SystemMessage(sb.toString()));
-        springMessages.addAll(memoryMessages());
-        var filtered = messages.stream().filter(m -> !"tool".equals(m.participant())).toList();
-        var history = filtered.subList(0, filtered.size() - 1);
-        if (!history.isEmpty()) {
-            var trimmed = ContextWindowTrimmer.trimChatHistory(history, conversationLimit);
-            int firstInContext = history.size() - trimmed.size();
-            springMessages.add(new SystemMessage(
-                    "This conversation has " + filtered.size() + " messages. "
-                            + "Your current context includes messages from index " + firstInContext + " (inclusive) to the latest. "
-                            + "Use retrieve_older_messages tool to fetch earlier messages if needed."));
-            springMessages.addAll(conversationHistory(trimmed, replyingBotName));
-        }
-        springMessages.add(toCurrentMessage(filtered.get(filtered.size() - 1), replyingBotName));
-        return springMessages;
+        if (window.messageCount() > 1) {
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(historyNote(window, summary));
+        }
+        return sb.toString();
     }
 
-    private List<Message> memoryMessages() {
-        var memory = skillsService.readMemory().entrySet().stream().toList();
-        var result = new ArrayList<Message>();
-        memory.subList(0, memory.size() - 1)
-                .forEach(e -> result.add(new SystemMessage(e.getKey() + ": " + e.getValue())));
-        result.add(SystemMessage.builder()
-                .text(memory.get(memory.size() - 1).getKey() + ": " + memory.get(memory.size() - 1).getValue())
-                .metadata(cacheControl())
-                .build());
-        return result;
+    private static UserMessage withTurnNote(UserMessage current, String turnNote) {
+        return current.mutate()
+                .text("<turn-context>\n" + turnNote + "\n</turn-context>\n\n" + current.getText())
+                .build();
     }
 
-    private List<Message> conversationHistory(List<ChatMessage> trimmedHistory, String replyingBotName) {
-        var result = new ArrayList<Message>();
-        if (!trimmedHistory.isEmpty()) {
-            trimmedHistory.forEach(m -> result.add(toHistorySpringMessage(m, replyingBotName)));
-            result.add(toCachedSpringMessage(trimmedHistory.get(trimmedHistory.size() - 1), replyingBotName));
+    private String relevantMemoryNote(MemoryIndex memory, HistoryWindow window) {
+        var query = window.current().plainText();
+        if (window.lastInHistory() != null) {
+            query += " " + window.lastInHistory().plainText();
         }
-        return result;
+        var relevant = memory.select(query, memoryBudget.maxEntries(), memoryBudget.maxChars());
+        var sb = new StringBuilder("Memory has ").append(memory.size()).append(" entries");
+        if (relevant.isEmpty()) {
+            return sb.append("; none match this message. Use the searchMemory tool to look them up.").toString();
+        }
+        sb.append("; the most relevant to this message follow. Use the searchMemory tool to look up others.");
+        relevant.forEach(e -> sb.append('\n').append(e.getKey()).append(": ").append(e.getValue()));
+        return sb.toString();
+    }
+
+    private static String appendParagraph(String text, String paragraph) {
+        return text.isEmpty() ? paragraph : text + "\n\n" + paragraph;
     }
 
-    private Message toHistorySpringMessage(ChatMessage message, String replyingBotName) {
-        return toSpringMessage(message, replyingBotName);
+    private static String historyNote(HistoryWindow window, HistorySummary summary) {
+        var note = "This conversation has " + window.messageCount() + " messages. "
+                + "Your current context includes messages from index " + window.firstInContext() + " (inclusive) to the latest. ";
+        if (summary == null) {
+            return note + "Use retrieve_older_messages tool to fetch earlier messages if needed.";
+        }
+        note += "Earlier messages are summarized above; use retrieve_older_messages tool only if you need their exact content";
+        if (summary.coveredMessages() >= window.firstInContext()) return note + ".";
+        return note + " or messages " + summary.coveredMessages() + " to " + (window.firstInContext() - 1)
+                + ", which are not summarized yet.";
+    }
+
+    /**
+     * Hands the messages that fell out of the last context built for this conversation and bot to the
+     * summarizer. Call after the turn, so summarizing never delays the reply.
+     */
+    public void summarizeDropped(String conversationId, String replyingBotName, String providerId) {
+        if (summarizer == null || conversationId == null) return;
+        ConvertedHistory converted;
+        synchronized (histories) {
+            converted = histories.get(historyKey(conversationId, replyingBotName));
+        }
+        if (converted == null) return;
+        List<ChatMessage> dropped;
+        synchronized (converted) {
+            dropped = converted.dropped();
+        }
+        if (!dropped.isEmpty()) {
+            summarizer.summarizeAsync(conversationId, providerId, dropped);
+        }
+    }
+
+    private static String historyKey(String conversationId, String replyingBotName) {
+        return conversationId + "\n" + replyingBotName;
+    }
+
+    private HistoryWindow historyWindow(List<ChatMessage> messages, String replyingBotName,
+                                        ContextBudget budget, String conversationId) {
+        ConvertedHistory converted;
+        if (conversationId == null) {
+            converted = new ConvertedHistory();
+        } else {
+            synchronized (histories) {
+                converted = histories.computeIfAbsent(historyKey(conversationId, replyingBotName),
+                        k -> new ConvertedHistory());
+            }
+        }
+        synchronized (converted) {
+            converted.extend(messages, m -> toSpringMessage(m, replyingBotName));
+            return converted.window(budget);
+        }
+    }
+
+    private record HistoryWindow(int messageCount, int firstInContext, List<Message> history,
+                                 ChatMessage lastInHistory, ChatMessage current) {
+    }
+
+    /**
+     * Non-tool messages of one conversation with their history conversion, in conversation order. Extended
+     * with the tail of each new snapshot; a snapshot that does not continue the cached one starts over.
+     * Token counts of the converted text are filled in on demand and kept while the tokenizer stays the same.
+     */
+    private static final class ConvertedHistory {
+
+        private final List<ChatMessage> filtered = new ArrayList<>();
+        private final List<Message> converted = new ArrayList<>();
+        private final List<Integer> tokenCounts = new ArrayList<>();
+        private Tokenizer countedWith;
+        private int rawCount;
+        private ChatMessage lastRaw;
+        private int firstInContext;
+
+        void extend(List<ChatMessage> messages, Function<ChatMessage, Message> convert) {
+            if (messages.size() < rawCount || (rawCount > 0 && !messages.get(rawCount - 1).equals(lastRaw))) {
+                filtered.clear();
+                converted.clear();
+                tokenCounts.clear();
+                rawCount = 0;
+                firstInContext = 0;
+            }
+            for (var message : messages.subList(rawCount, messages.size())) {
+                if ("tool".equals(message.participant())) continue;
+                filtered.add(message);
+                converted.add(convert.apply(message));
+            }
+            rawCount = messages.size();
+            lastRaw = rawCount > 0 ? messages.get(rawCount - 1) : null;
+        }
+
+        HistoryWindow window(ContextBudget budget) {
+            int historySize = filtered.size() - 1;
+            int firstInContext = budget.countsTokens()
+                    ? ContextWindowTrimmer.firstWithinBudget(historySize, i -> tokenCount(i, budget.tokenizer()),
+                            budget.tokensLimit())
+                    : historySize - ContextWindowTrimmer.trimChatHistory(filtered.subList(0, historySize),
+                            budget.charsLimit()).size();
+            this.firstInContext = firstInContext;
+            return new HistoryWindow(filtered.size(), firstInContext,
+                    List.copyOf(converted.subList(firstInContext, historySize)),
+                    firstInContext < historySize ? filtered.get(historySize - 1) : null,
+                    filtered.get(historySize));
+        }
+
+        /** Messages before the most recent window, oldest first. */
+        List<ChatMessage> dropped() {
+            return List.copyOf(filtered.subList(0, firstInContext));
+        }
+
+        private int tokenCount(int index, Tokenizer tokenizer) {
+            if (tokenizer != countedWith) {
+                tokenCounts.clear();
+                countedWith = tokenizer;
+            }
+            while (tokenCounts.size() < converted.size()) {
+                tokenCounts.add(null);
+            }
+            var count = tokenCounts.get(index);
+            if (count == null) {
+                var text = converted.get(index).getText();
+                count = tokenizer.countTokens(text);
+                tokenCounts.set(index, count);
+            }
+            return count;
+        }
+    }
+
+    /** Memory in key order, so the prompt prefix only changes when memory does; the last entry ends the cached block. */
+    private List<Message> memoryMessages(Map<String, String> entries) {
+        var memory = List.copyOf(new TreeMap<>(entries).entrySet());
+        var result = new ArrayList<Message>();
+        for (int i = 0; i < memory.size(); i++) {
+            var text = memory.get(i).getKey() + ": " + memory.get(i).getValue();
+            result.add(i < memory.size() - 1
+                    ? new SystemMessage(text)
+                    : SystemMessage.builder().text(text).metadata(cacheControl()).build());
+        }
+        return result;
     }
 
     private Message toCachedSpringMessage(ChatMessage message, String replyingBotName) {
@@ -126,7 +397,7 @@ public class ChatContextBuilder {
         }
         if (replyingBotName != null && replyingBotName.equals(p)) {
             return AssistantMessage.builder()
-                    .content(flattenStructuredContent(content))
+                    .content(flattenStructuredContent(message))
                     .properties(cacheControl())
                     .build();
         }
@@ -137,7 +408,7 @@ public class ChatContextBuilder {
         var p = message.participant();
         if ("system".equals(p)) return new SystemMessage(message.content());
         if (replyingBotName != null && replyingBotName.equals(p)) {
-            return new AssistantMessage(flattenStructuredContent(message.content()));
+            return new AssistantMessage(flattenStructuredContent(message));
         }
         return new UserMessage(contentWithFileReferences(message));
     }
@@ -146,20 +417,28 @@ public class ChatContextBuilder {
         var p = message.participant();
         if ("system".equals(p)) return new SystemMessage(message.content());
         if (replyingBotName != null && replyingBotName.equals(p)) {
-            return new AssistantMessage(flattenStructuredContent(message.content()));
+            return new AssistantMessage(flattenStructuredContent(message));
         }
         return buildCurrentUserMessage(message);
     }
 
     private UserMessage buildCurrentUserMessage(ChatMessage message) {
-        if (isUserParts(message.content())) {
-            return buildCurrentUserMessageFromParts(message.content());
-        }
-        var textBuilder = new StringBuilder(message.content() != null ? message.content() : "");
+        var textBuilder = new StringBuilder();
         var mediaList = new ArrayList<Media>();
-
-        for (var file : message.files()) {
-            processFileForCurrentMessage(file, textBuilder, mediaList);
+        if (isUserParts(message.content())) {
+            for (var part : message.parts()) {
+                if (part instanceof MessagePart.Text text) {
+                    if (!textBuilder.isEmpty()) textBuilder.append(" ");
+                    textBuilder.append(text.text());
+                } else if (part instanceof MessagePart.File file) {
+                    processFileForCurrentMessage(file.file(), textBuilder, mediaList);
+                }
+            }
+        } else {
+            textBuilder.append(message.content() != null ? message.content() : "");
+            for (var file : message.files()) {
+                processFileForCurrentMessage(file, textBuilder, mediaList);
+            }
         }
 
         var builder = UserMessage.builder().text(textBuilder.toString());
@@ -169,101 +448,37 @@ public class ChatContextBuilder {
         return builder.build();
     }
 
-    private UserMessage buildCurrentUserMessageFromParts(String content) {
-        var textBuilder = new StringBuilder();
-        var mediaList = new ArrayList<Media>();
-        try {
-            @SuppressWarnings("unchecked")
-            var data = (Map<String, Object>) objectMapper.readValue(content, Map.class);
-            @SuppressWarnings("unchecked")
-            var parts = (List<Map<String, Object>>) data.get("user_parts");
-            if (parts != null) {
-                for (var part : parts) {
-                    var type = String.valueOf(part.get("type"));
-                    if ("text".equals(type)) {
-                        var partContent = part.get("content");
-                        if (partContent != null) {
-                            if (textBuilder.length() > 0) textBuilder.append(" ");
-                            textBuilder.append(partContent);
-                        }
-                    } else if ("file".equals(type)) {
-                        var id = String.valueOf(part.get("id"));
-                        var name = String.valueOf(part.get("name"));
-                        var mimeType = String.valueOf(part.get("mimeType"));
-                        processFileForCurrentMessage(new FileAttachment(id, name, mimeType), textBuilder, mediaList);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            textBuilder.append(content);
-        }
-        var builder = UserMessage.builder().text(textBuilder.toString());
-        if (!mediaList.isEmpty()) builder.media(mediaList);
-        return builder.build();
-    }
-
-    private boolean isUserParts(String content) {
+    private static boolean isUserParts(String content) {
         return content != null && content.trim().startsWith("{\"user_parts\":");
     }
 
-    private String flattenUserParts(String content) {
-        try {
-            @SuppressWarnings("unchecked")
-            var data = (Map<String, Object>) objectMapper.readValue(content, Map.class);
-            @SuppressWarnings("unchecked")
-            var parts = (List<Map<String, Object>>) data.get("user_parts");
-            if (parts == null) return content;
-            var sb = new StringBuilder();
-            for (var part : parts) {
-                var type = String.valueOf(part.get("type"));
-                if ("text".equals(type)) {
-                    var partContent = part.get("content");
-                    if (partContent != null) {
-                        if (sb.length() > 0) sb.append(" ");
-                        sb.append(partContent);
-                    }
-                } else if ("file".equals(type)) {
-                    sb.append("\n[File: ").append(part.get("name")).append("]");
-                }
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            return content;
-        }
-    }
-
     private void processFileForCurrentMessage(FileAttachment file, StringBuilder textBuilder, List<Media> mediaList) {
-        if (fileStorageService == null) {
+        if (attachments == null) {
             appendFileReference(textBuilder, file);
             return;
         }
         try {
-            var bytes = fileStorageService.getBytes(file.id());
-            var mimeType = parseSafeMimeType(file.mimeType());
-
-            if (isNativeMedia(mimeType)) {
-                mediaList.add(new Media(mimeType, new ByteArrayResource(bytes)));
-            } else if (isTextContent(mimeType, file.name())) {
-                var content = new String(bytes, StandardCharsets.UTF_8);
-                var ext = fileExtension(file.name());
-                textBuilder.append("\n\nFile: ").append(file.name())
-                        .append("\n```").append(ext).append("\n")
-                        .append(content).append("\n```");
-            } else {
-                var b64 = Base64.getEncoder().encodeToString(bytes);
-                textBuilder.append("\n\nFile: ").append(file.name())
-                        .append(" (").append(file.mimeType()).append(", base64-encoded):\n")
-                        .append(b64);
-            }
+            var content = attachments.prepare(file);
+            textBuilder.append(content.text());
+            if (content.media() != null) mediaList.add(content.media());
         } catch (IOException e) {
             appendFileReference(textBuilder, file);
         }
     }
 
-    private String contentWithFileReferences(ChatMessage message) {
+    private static String contentWithFileReferences(ChatMessage message) {
         var content = message.content() != null ? message.content() : "";
         if (isUserParts(content)) {
-            return flattenUserParts(content);
+            var sb = new StringBuilder();
+            for (var part : message.parts()) {
+                if (part instanceof MessagePart.Text text) {
+                    if (!sb.isEmpty()) sb.append(" ");
+                    sb.append(text.text());
+                } else if (part instanceof MessagePart.File file) {
+                    appendFileReference(sb, file.file());
+                }
+            }
+            return sb.toString();
         }
         if (message.files().isEmpty()) return content;
         var fileNames = message.files().stream()
@@ -272,64 +487,22 @@ public class ChatContextBuilder {
         return content + "\n[Attached files: " + fileNames + "]";
     }
 
-    private void appendFileReference(StringBuilder sb, FileAttachment file) {
+    private static void appendFileReference(StringBuilder sb, FileAttachment file) {
         sb.append("\n[File: ").append(file.name()).append("]");
     }
 
-    private boolean isNativeMedia(MimeType mimeType) {
-        return "image".equals(mimeType.getType())
-                || "audio".equals(mimeType.getType())
-                || ("application".equals(mimeType.getType()) && "pdf".equals(mimeType.getSubtype()));
-    }
-
-    private boolean isTextContent(MimeType mimeType, String filename) {
-        if ("text".equals(mimeType.getType())) return true;
-        if ("application".equals(mimeType.getType()) && TEXT_APP_SUBTYPES.contains(mimeType.getSubtype())) return true;
-        var ext = fileExtension(filename);
-        return TEXT_EXTENSIONS.contains(ext);
-    }
-
-    private static MimeType parseSafeMimeType(String mimeTypeStr) {
-        try {
-            return MimeTypeUtils.parseMimeType(mimeTypeStr);
-        } catch (Exception e) {
-            return MimeTypeUtils.APPLICATION_OCTET_STREAM;
-        }
-    }
-
-    private static String fileExtension(String filename) {
-        if (filename == null) return "";
-        int dot = filename.lastIndexOf('.');
-        return dot >= 0 ? filename.substring(dot + 1).toLowerCase() : "";
-    }
-
-    private String flattenStructuredContent(String content) {
-        if (content == null || !content.trim().startsWith("{\"parts\":")) {
-            return content != null ? content : "";
-        }
-        try {
-            @SuppressWarnings("unchecked")
-            var map = objectMapper.readValue(content, Map.class);
-            var parts = (List<?>) map.get("parts");
-            if (parts == null) return content;
-            var sb = new StringBuilder();
-            for (var o : parts) {
-                if (!(o instanceof Map<?, ?> p)) continue;
-                var type = p.get("type");
-                if (type != null && REASONING_KEYS.contains(type.toString())) continue;
-                var partContent = p.get("content");
-                if (partContent == null) continue;
-                var contentStr = partContent.toString();
-                if ("answer".equals(type)) {
-                    sb.append(contentStr);
-                } else {
-                    sb.append("\n[Tool]\n").append(contentStr).append("\n");
-                }
+    /** A bot's own reply as the model sees it: answers and tool results, without reasoning. */
+    private static String flattenStructuredContent(ChatMessage message) {
+        var sb = new StringBuilder();
+        for (var part : message.parts()) {
+            switch (part) {
+                case MessagePart.Text text -> sb.append(text.text());
+                case MessagePart.Tool tool -> sb.append("\n[Tool]\n").append(tool.text()).append("\n");
+                case MessagePart.Reasoning ignored -> { }
+                case MessagePart.File file -> appendFileReference(sb, file.file());
             }
-            return sb.toString();
-        } catch (JsonProcessingException | ClassCastException e) {
-            return content;
         }
+        return sb.toString();
     }
 
     private static Map<String, Object> cacheControl() {
@@ -1,13 +1,24 @@
 package com.programmersdiary.aidaemon.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.programmersdiary.aidaemon.files.FileAttachment;
 
 import java.util.List;
 
-public record ChatMessage(String participant, String content, long timestampMillis, List<FileAttachment> files) {
+/**
+ * A conversation message. {@code content} keeps the stored form, plain text or structured JSON, for the API
+ * and storage; {@code parts} is that content parsed once when the message is created or read.
+ */
+public record ChatMessage(String participant, String content, long timestampMillis, List<FileAttachment> files,
+                          @JsonIgnore List<MessagePart> parts) {
 
     public ChatMessage {
         files = files != null ? files : List.of();
+        parts = parts != null ? parts : MessageParts.parse(content);
+    }
+
+    public ChatMessage(String participant, String content, long timestampMillis, List<FileAttachment> files) {
+        this(participant, content, timestampMillis, files, null);
     }
 
     public static ChatMessage of(String participant, String content) {
@@ -17,4 +28,16 @@ public record ChatMessage(String participant, String content, long timestampMill
     public static ChatMessage ofWithFiles(String participant, String content, List<FileAttachment> files) {
         return new ChatMessage(participant, content, System.currentTimeMillis(), files != null ? files : List.of());
     }
-}
\ No newline at end of file
+
+    /** Text parts joined by spaces: the answer of a bot reply or the text of a user message. */
+    public String plainText() {
+        if (parts.size() == 1 && parts.getFirst() instanceof MessagePart.Text text) return text.text();
+        var sb = new StringBuilder();
+        for (var part : parts) {
+            if (!(part instanceof MessagePart.Text text)) continue;
+            if (!sb.isEmpty()) sb.append(' ');
+            sb.append(text.text());
+        }
+        return sb.toString();
+    }
+}
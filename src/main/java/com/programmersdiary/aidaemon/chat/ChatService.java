@@ -2,8 +2,12 @@ package com.programmersdiary.aidaemon.chat;
 
 import com.programmersdiary.aidaemon.mcp.McpService;
 import com.programmersdiary.aidaemon.provider.ChatModelFactory;
+import com.programmersdiary.aidaemon.provider.PromptCacheMetrics;
 import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.StreamingChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
@@ -15,12 +19,16 @@ import reactor.core.publisher.Sinks;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 @Service
 public class ChatService {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+
     private static final List<String> REASONING_KEYS =
             List.of("thinking", "reasoningContent", "reasoning_content", "reasoning");
 
@@ -30,32 +38,58 @@ public class ChatService {
     private final McpService mcpService;
     private final boolean manualApprove;
     private final int toolExecutionTimeoutSeconds;
+    private final int maxToolsPerRequest;
+    private final int maxToolSchemaChars;
     private final ToolApprovalService toolApprovalService;
+    private final PromptCacheMetrics promptCacheMetrics;
+    private final ToolRouter toolRouter;
 
     public ChatService(ProviderConfigRepository configRepository,
                        ChatModelFactory chatModelFactory,
                        ChatToolCallbacksService toolCallbacksService,
                        McpService mcpService,
                        ToolApprovalService toolApprovalService,
+                       PromptCacheMetrics promptCacheMetrics,
+                       ToolRouter toolRouter,
                        @Value("${aidaemon.manual-approve:false}") boolean manualApprove,
-                       @Value("${aidaemon.tool-execution-timeout-seconds:300}") int toolExecutionTimeoutSeconds) {
+                       @Value("${aidaemon.tool-execution-timeout-seconds:300}") int toolExecutionTimeoutSeconds,
+                       @Value("${aidaemon.tools.max-per-request:0}") int maxToolsPerRequest,
+                       @Value("${aidaemon.tools.max-schema-chars:0}") int maxToolSchemaChars) {
         this.configRepository = configRepository;
         this.chatModelFactory = chatModelFactory;
         this.toolCallbacksService = toolCallbacksService;
         this.mcpService = mcpService;
         this.toolApprovalService = toolApprovalService;
+        this.promptCacheMetrics = promptCacheMetrics;
+        this.toolRouter = toolRouter;
         this.manualApprove = manualApprove;
         this.toolExecutionTimeoutSeconds = toolExecutionTimeoutSeconds;
+        this.maxToolsPerRequest = maxToolsPerRequest;
+        this.maxToolSchemaChars = maxToolSchemaChars;
     }
 
     public ChatResult streamAndCollect(String providerId, List<Message> contextMessages, StreamRequestMetadata meta) {
+        return streamAndCollect(providerId, CompletableFuture.completedFuture(contextMessages), meta);
+    }
+
+    public ChatResult streamAndCollect(String providerId, CompletableFuture<List<Message>> context,
+                                       StreamRequestMetadata meta) {
         var resultRef = new AtomicReference<ChatResult>();
-        stream(providerId, contextMessages, meta, resultRef::set).blockLast();
+        stream(providerId, context, meta, resultRef::set).blockLast();
         return resultRef.get();
     }
 
     public Flux<StreamChunk> stream(String providerId, List<Message> contextMessages, StreamRequestMetadata meta,
                                    Consumer<ChatResult> onComplete) {
+        return stream(providerId, CompletableFuture.completedFuture(contextMessages), meta, onComplete);
+    }
+
+    /**
+     * Streams a reply to a context that may still be being built: tool callbacks and the model are set up
+     * first and the context is only waited for when the prompt is created, so both are prepared concurrently.
+     */
+    public Flux<StreamChunk> stream(String providerId, CompletableFuture<List<Message>> context,
+                                   StreamRequestMetadata meta, Consumer<ChatResult> onComplete) {
         var config = configRepository.findById(providerId)
                 .orElseThrow(() -> new IllegalArgumentException("Provider not found: " + providerId));
 
@@ -64,18 +98,27 @@ public class ChatService {
         var onToolChunk = (Consumer<StreamChunk>) c -> sink.tryEmitNext(c);
         var approvalServiceForTools = manualApprove ? toolApprovalService : null;
         var execTimeout = manualApprove ? toolExecutionTimeoutSeconds : 0;
-        var loggingTools = new ArrayList<ToolCallback>();
+        var catalog = new ToolCatalog(maxToolsPerRequest, maxToolSchemaChars);
         for (var t : toolCallbacksService.buildToolCallbacks(meta, config.id(), onToolChunk)) {
-            loggingTools.add(new LoggingToolCallback(t, toolLog, null, onToolChunk, approvalServiceForTools, execTimeout));
+            catalog.add(new LoggingToolCallback(t, toolLog, null, onToolChunk, approvalServiceForTools, execTimeout));
         }
         for (var t : toolCallbacksService.buildFileEditToolCallbacks(meta, onToolChunk)) {
-            loggingTools.add(new LoggingToolCallback(t, toolLog, null, onToolChunk, null, execTimeout));
+            catalog.add(new LoggingToolCallback(t, toolLog, null, onToolChunk, null, execTimeout));
         }
+        var mcpTools = new ArrayList<ToolCallback>();
         mcpService.getToolCallbacksByServer().forEach((serverName, callbacks) ->
-                callbacks.forEach(t -> loggingTools.add(new LoggingToolCallback(t, toolLog, serverName, onToolChunk, approvalServiceForTools, execTimeout))));
+                callbacks.forEach(t -> mcpTools.add(new LoggingToolCallback(t, toolLog, serverName, onToolChunk, approvalServiceForTools, execTimeout))));
+        var routing = toolRouter.route(mcpTools, meta.messages());
+        for (var t : routing.discovery()) {
+            catalog.reserve(new LoggingToolCallback(t, toolLog, null, onToolChunk, null, execTimeout));
+        }
+        routing.tools().forEach(catalog::add);
+        if (!catalog.omitted().isEmpty()) {
+            log.debug("Left out {} tools (duplicate or over the per-request cap): {}", catalog.omitted().size(), catalog.omitted());
+        }
 
-        var chatModel = chatModelFactory.create(config, loggingTools);
-        var promptOptions = chatModelFactory.promptOptions(config, loggingTools);
+        var chatModel = chatModelFactory.create(config);
+        var promptOptions = chatModelFactory.promptOptions(config, catalog.tools());
         if (!(chatModel instanceof StreamingChatModel streamingModel)) {
             var error = "Provider does not support streaming; only streaming models are supported.";
             onComplete.accept(new ChatResult("[Error] " + error));
@@ -85,9 +128,17 @@ public class ChatService {
         final StringBuilder contentAccum = new StringBuilder();
         final StringBuilder reasoningAccum = new StringBuilder();
         final var orderedChunks = new ArrayList<StreamChunk>();
-        var prompt = promptOptions != null ? new Prompt(contextMessages, promptOptions) : new Prompt(contextMessages);
+        var contextMessages = join(context);
+        var prompt = new Prompt(contextMessages, promptOptions);
 
+        final var usage = new AtomicReference<Usage>();
         var contentStream = streamingModel.stream(prompt)
+                .doOnNext(response -> {
+                    var reported = response.getMetadata().getUsage();
+                    if (reported != null && (reported.getNativeUsage() != null || valueOf(reported.getPromptTokens()) > 0)) {
+                        usage.set(reported);
+                    }
+                })
                 .flatMap(response -> {
                     var c = toStreamChunk(response);
                     return c != null ? Flux.just(c) : Flux.empty();
@@ -110,6 +161,7 @@ public class ChatService {
                 });
         return merged
                 .doOnComplete(() -> {
+                    promptCacheMetrics.record(config.id(), usage.get());
                     var parts = coalesceOrderedChunks(orderedChunks);
                     var reasoning = reasoningAccum.isEmpty() ? null : reasoningAccum.toString();
                     var partsWithReasoning = new ArrayList<StreamChunk>();
@@ -124,6 +176,19 @@ public class ChatService {
                 .doOnError(e -> onComplete.accept(new ChatResult("[Error] " + e.getMessage())));
     }
 
+    private static List<Message> join(CompletableFuture<List<Message>> context) {
+        try {
+            return context.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static int valueOf(Integer tokens) {
+        return tokens != null ? tokens : 0;
+    }
+
     private static List<StreamChunk> coalesceOrderedChunks(List<StreamChunk> orderedChunks) {
         if (orderedChunks.isEmpty()) {
             return List.of();
@@ -3,11 +3,13 @@ package com.programmersdiary.aidaemon.chat;
 import com.programmersdiary.aidaemon.bot.BotManagementTool;
 import com.programmersdiary.aidaemon.bot.BotRepository;
 import com.programmersdiary.aidaemon.bot.BotService;
+import com.programmersdiary.aidaemon.files.AttachmentProcessor;
 import com.programmersdiary.aidaemon.files.FileStorageService;
-import com.programmersdiary.aidaemon.mcp.McpService;
+import com.programmersdiary.aidaemon.provider.ProviderConfig;
 import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
 import com.programmersdiary.aidaemon.provider.ProviderType;
 import com.programmersdiary.aidaemon.scheduling.ScheduledJobExecutor;
+import com.programmersdiary.aidaemon.skills.AttachmentTool;
 import com.programmersdiary.aidaemon.skills.ChatTools;
 import com.programmersdiary.aidaemon.skills.FileEditTool;
 import com.programmersdiary.aidaemon.skills.ImageGenerationTool;
@@ -18,7 +20,6 @@ import com.programmersdiary.aidaemon.skills.SmitheryMcpTool;
 import com.programmersdiary.aidaemon.skills.SmitherySkillTool;
 import org.springframework.ai.openai.OpenAiImageModel;
 import org.springframework.ai.openai.api.OpenAiImageApi;
-import org.springframework.ai.support.ToolCallbacks;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
@@ -28,7 +29,6 @@ import org.springframework.web.client.RestClient;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -43,11 +43,15 @@ public class ChatToolCallbacksService {
     private final ConversationRepository conversationRepository;
     private final BotService botService;
     private final BotRepository botRepository;
-    private final McpService mcpService;
     private final SmitheryMcpTool smitheryMcpTool;
     private final SmitherySkillTool smitherySkillTool;
     private final ProviderConfigRepository providerConfigRepository;
     private final FileStorageService fileStorageService;
+    private final AttachmentProcessor attachmentProcessor;
+    private volatile List<ToolCallback> sharedTools;
+    private volatile CachedImageModel imageModel;
+
+    private record CachedImageModel(ProviderConfig config, OpenAiImageModel model) {}
 
     public ChatToolCallbacksService(SkillsService skillsService,
                                    ScheduledJobExecutor jobExecutor,
@@ -57,11 +61,11 @@ public class ChatToolCallbacksService {
                                    ConversationRepository conversationRepository,
                                    @Lazy BotService botService,
                                    BotRepository botRepository,
-                                   McpService mcpService,
                                    @Autowired(required = false) SmitheryMcpTool smitheryMcpTool,
                                    @Autowired(required = false) SmitherySkillTool smitherySkillTool,
                                    ProviderConfigRepository providerConfigRepository,
-                                   FileStorageService fileStorageService) {
+                                   FileStorageService fileStorageService,
+                                   AttachmentProcessor attachmentProcessor) {
         this.skillsService = skillsService;
         this.jobExecutor = jobExecutor;
         this.shellAccessService = shellAccessService;
@@ -70,57 +74,78 @@ public class ChatToolCallbacksService {
         this.conversationRepository = conversationRepository;
         this.botService = botService;
         this.botRepository = botRepository;
-        this.mcpService = mcpService;
         this.smitheryMcpTool = smitheryMcpTool;
         this.smitherySkillTool = smitherySkillTool;
         this.providerConfigRepository = providerConfigRepository;
         this.fileStorageService = fileStorageService;
+        this.attachmentProcessor = attachmentProcessor;
     }
 
     public List<ToolCallback> buildFileEditToolCallbacks(StreamRequestMetadata meta, Consumer<StreamChunk> onChunk) {
-        return Arrays.asList(ToolCallbacks.from(
-                new FileEditTool(shellAccessService, toolApprovalService::requestApproval, onChunk)));
+        return ToolRegistry.bind(new FileEditTool(shellAccessService, toolApprovalService::requestApproval, onChunk));
     }
 
     public List<ToolCallback> buildToolCallbacks(StreamRequestMetadata meta, String providerId,
                                                   Consumer<StreamChunk> onFileChangeChunk) {
-        var filtered = meta.messages().stream().filter(m -> !"tool".equals(m.participant())).toList();
         var list = new ArrayList<ToolCallback>();
 
-        list.addAll(Arrays.asList(ToolCallbacks.from(new ChatTools(skillsService, jobExecutor, providerId, filtered,
-                meta.conversationLimit(), meta.botName()))));
-        list.addAll(Arrays.asList(ToolCallbacks.from(new ShellTool(shellAccessService))));
-        list.addAll(Arrays.asList(ToolCallbacks.from(new BotManagementTool(botService))));
+        list.addAll(ToolRegistry.bind(new ChatTools(skillsService, jobExecutor, providerId,
+                conversationRepository, meta.conversationId(), meta.conversationLimit())));
+        list.addAll(sharedToolCallbacks());
 
         var botName = meta.botName();
         if (botName != null && !botName.isBlank()) {
-            list.addAll(Arrays.asList(ToolCallbacks.from(new ConversationManagementTool(
-                    conversationService, conversationRepository, botRepository, botName, providerId))));
+            list.addAll(ToolRegistry.bind(new ConversationManagementTool(
+                    conversationService, conversationRepository, botRepository, botName, providerId)));
+        }
+        if (meta.conversationId() != null) {
+            list.addAll(ToolRegistry.bind(new AttachmentTool(attachmentProcessor, meta.conversationId())));
         }
-        if (smitheryMcpTool != null) {
-            list.addAll(Arrays.asList(ToolCallbacks.from(smitheryMcpTool)));
+
+        var imageModel = imageModel();
+        if (imageModel != null) {
+            list.addAll(ToolRegistry.bind(new ImageGenerationTool(fileStorageService, imageModel, meta.conversationId())));
         }
-        if (smitherySkillTool != null) {
-            list.addAll(Arrays.asList(ToolCallbacks.from(smitherySkillTool)));
+
+        return list;
+    }
+
+    /** Tools that hold no per-request state, built once. */
+    private List<ToolCallback> sharedToolCallbacks() {
+        var tools = sharedTools;
+        if (tools == null) {
+            var list = new ArrayList<ToolCallback>();
+            list.addAll(ToolRegistry.bind(new ShellTool(shellAccessService)));
+            list.addAll(ToolRegistry.bind(new BotManagementTool(botService)));
+            if (smitheryMcpTool != null) {
+                list.addAll(ToolRegistry.bind(smitheryMcpTool));
+            }
+            if (smitherySkillTool != null) {
+                list.addAll(ToolRegistry.bind(smitherySkillTool));
+            }
+            sharedTools = tools = List.copyOf(list);
         }
-        mcpService.getToolCallbacksByServer().forEach((serverName, callbacks) -> list.addAll(callbacks));
+        return tools;
+    }
 
-        providerConfigRepository.findAll().stream()
+    /** The image model of the first DALL-E 3 provider, rebuilt only when that provider's configuration changes. */
+    private OpenAiImageModel imageModel() {
+        var dalleConfig = providerConfigRepository.findAll().stream()
                 .filter(c -> c.type() == ProviderType.DALLE_3)
                 .findFirst()
-                .ifPresent(dalleConfig -> {
-                    var factory = new SimpleClientHttpRequestFactory();
-                    factory.setConnectTimeout(Duration.ofSeconds(30));
-                    factory.setReadTimeout(Duration.ofSeconds(120));
-                    var imageApi = OpenAiImageApi.builder()
-                            .apiKey(dalleConfig.apiKey())
-                            .restClientBuilder(RestClient.builder().requestFactory(factory))
-                            .build();
-                    var imageModel = new OpenAiImageModel(imageApi);
-                    list.addAll(Arrays.asList(ToolCallbacks.from(
-                            new ImageGenerationTool(fileStorageService, imageModel, meta.conversationId()))));
-                });
-
-        return list;
+                .orElse(null);
+        if (dalleConfig == null) return null;
+        var cached = imageModel;
+        if (cached != null && cached.config().equals(dalleConfig)) return cached.model();
+        var factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(Duration.ofSeconds(30));
+        factory.setReadTimeout(Duration.ofSeconds(120));
+        var imageApi = OpenAiImageApi.builder()
+                .apiKey(dalleConfig.apiKey())
+                .restClientBuilder(RestClient.builder().requestFactory(factory))
+                .build();
+        var model = new OpenAiImageModel(imageApi);
+        imageModel = new CachedImageModel(dalleConfig, model);
+        return model;
     }
 }
@@ -0,0 +1,20 @@
+package com.programmersdiary.aidaemon.chat;
+
+/**
+ * How much conversation history fits in a prompt: a token budget counted with {@code tokenizer} when
+ * {@code tokensLimit} is positive, otherwise a character budget.
+ */
+public record ContextBudget(int charsLimit, int tokensLimit, Tokenizer tokenizer) {
+
+    public static ContextBudget chars(int charsLimit) {
+        return new ContextBudget(charsLimit, 0, null);
+    }
+
+    public static ContextBudget tokens(int tokensLimit, Tokenizer tokenizer) {
+        return new ContextBudget(0, tokensLimit, tokenizer);
+    }
+
+    public boolean countsTokens() {
+        return tokensLimit > 0 && tokenizer != null;
+    }
+}
@@ -1,19 +1,48 @@
 package com.programmersdiary.aidaemon.chat;
 
+import com.programmersdiary.aidaemon.provider.ProviderConfig;
+import com.programmersdiary.aidaemon.provider.ProviderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 @Component
 public class ContextConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(ContextConfig.class);
+
     private final String systemInstructions;
     private final int charsLimit;
+    private final int tokensLimit;
+    private final Tokenizer bpeTokenizer;
+    private final MemoryBudget memoryBudget;
 
     public ContextConfig(
             @Value("${aidaemon.system-instructions:}") String systemInstructions,
-            @Value("${aidaemon.context-window.chars-limit:${aidaemon.chars-context-window:0}}") int charsLimit) {
+            @Value("${aidaemon.context-window.chars-limit:${aidaemon.chars-context-window:0}}") int charsLimit,
+            @Value("${aidaemon.context-window.tokens-limit:0}") int tokensLimit,
+            @Value("${aidaemon.context-window.bpe-ranks-file:}") String bpeRanksFile,
+            @Value("${aidaemon.context-window.memory-max-entries:20}") int memoryMaxEntries,
+            @Value("${aidaemon.context-window.memory-max-chars:4000}") int memoryMaxChars) {
         this.systemInstructions = systemInstructions != null ? systemInstructions : "";
         this.charsLimit = charsLimit;
+        this.tokensLimit = tokensLimit;
+        this.bpeTokenizer = loadBpeTokenizer(bpeRanksFile);
+        this.memoryBudget = new MemoryBudget(memoryMaxEntries, memoryMaxChars);
+    }
+
+    private static Tokenizer loadBpeTokenizer(String ranksFile) {
+        if (ranksFile == null || ranksFile.isBlank()) return HeuristicTokenizer.INSTANCE;
+        try {
+            return BpeTokenizer.load(Path.of(ranksFile));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot load BPE ranks from {}, estimating tokens instead: {}", ranksFile, e.getMessage());
+            return HeuristicTokenizer.INSTANCE;
+        }
     }
 
     public String systemInstructions() {
@@ -23,4 +52,20 @@ public class ContextConfig {
     public int charsLimit() {
         return charsLimit;
     }
+
+    public MemoryBudget memoryBudget() {
+        return memoryBudget;
+    }
+
+    public Tokenizer tokenizerFor(ProviderType type) {
+        return type == ProviderType.OPENAI ? bpeTokenizer : HeuristicTokenizer.INSTANCE;
+    }
+
+    /** Token budget when the provider or {@code tokens-limit} sets one (provider wins), else the character budget. */
+    public ContextBudget budgetFor(ProviderConfig provider) {
+        var providerLimit = provider != null ? provider.maxContextTokens() : null;
+        int limit = providerLimit != null && providerLimit > 0 ? providerLimit : tokensLimit;
+        if (limit <= 0) return ContextBudget.chars(charsLimit);
+        return ContextBudget.tokens(limit, tokenizerFor(provider != null ? provider.type() : null));
+    }
 }
@@ -1,6 +1,7 @@
 package com.programmersdiary.aidaemon.chat;
 
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 public final class ContextWindowTrimmer {
 
@@ -8,24 +9,31 @@ public final class ContextWindowTrimmer {
     }
 
     public static List<ChatMessage> trimChatHistory(List<ChatMessage> items, int charLimit) {
-        if (items.isEmpty()) {
-            return items;
-        }
-        if (charLimit <= 0) {
-            return items.subList(items.size(), items.size());
+        return items.subList(firstWithinBudget(items.size(), i -> contentLength(items.get(i)), charLimit), items.size());
+    }
+
+    /**
+     * Index of the oldest item such that it and every later item together cost at most {@code limit}.
+     * Walks back from the newest item, so only the kept items and one more are costed.
+     */
+    static int firstWithinBudget(int size, IntUnaryOperator cost, int limit) {
+        if (size == 0 || limit <= 0) {
+            return size;
         }
         int total = 0;
-        int start = items.size();
-        for (int i = items.size() - 1; i >= 0; i--) {
-            String content = items.get(i).content();
-            int len = content != null ? content.length() : 0;
-            if (total + len > charLimit) {
+        int start = size;
+        for (int i = size - 1; i >= 0; i--) {
+            int len = cost.applyAsInt(i);
+            if (total + len > limit) {
                 break;
             }
             total += len;
             start = i;
         }
-        return items.subList(start, items.size());
+        return start;
     }
 
+    private static int contentLength(ChatMessage message) {
+        return message.content() != null ? message.content().length() : 0;
+    }
 }
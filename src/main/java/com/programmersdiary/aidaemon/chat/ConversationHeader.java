@@ -0,0 +1,28 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+record ConversationHeader(String id,
+                          String name,
+                          String providerId,
+                          Long createdAtMillis,
+                          List<String> participants) {
+
+    static ConversationHeader of(Conversation conversation) {
+        return new ConversationHeader(conversation.id(), conversation.name(), conversation.providerId(),
+                conversation.createdAtMillis(), conversation.participants());
+    }
+
+    static ConversationHeader of(ConversationIndexEntry entry) {
+        return new ConversationHeader(entry.id(), entry.name(), entry.providerId(),
+                entry.createdAtMillis(), entry.participants());
+    }
+
+    Conversation toConversation(List<ChatMessage> messages) {
+        return new Conversation(id, name, providerId, new ArrayList<>(messages), createdAtMillis, participants);
+    }
+}
@@ -0,0 +1,76 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-conversation metadata kept in memory and in {@code index.json}. The preview holds the last few
+ * messages as short display text so conversation lists never read message logs.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+record ConversationIndexEntry(String id,
+                              String name,
+                              String providerId,
+                              List<String> participants,
+                              Long createdAtMillis,
+                              int messageCount,
+                              long lastUpdatedMillis,
+                              List<ChatMessage> preview) {
+
+    static final int PREVIEW_MESSAGES = 4;
+    static final int PREVIEW_CHARS = 80;
+
+    ConversationIndexEntry {
+        preview = preview != null ? preview : List.of();
+    }
+
+    static ConversationIndexEntry of(Conversation conversation) {
+        var messages = conversation.messages() != null ? conversation.messages() : List.<ChatMessage>of();
+        long lastUpdated = !messages.isEmpty()
+                ? messages.get(messages.size() - 1).timestampMillis()
+                : conversation.createdAtMillis() != null ? conversation.createdAtMillis() : 0L;
+        return new ConversationIndexEntry(conversation.id(), conversation.name(), conversation.providerId(),
+                conversation.participants(), conversation.createdAtMillis(), messages.size(), lastUpdated,
+                previewOf(List.of(), messages));
+    }
+
+    ConversationIndexEntry withMessageCount(int count, long updatedAtMillis) {
+        return new ConversationIndexEntry(id, name, providerId, participants, createdAtMillis,
+                count, Math.max(lastUpdatedMillis, updatedAtMillis), preview);
+    }
+
+    /** Entry after reading the full history from the log. */
+    ConversationIndexEntry withHistory(List<ChatMessage> messages) {
+        return new ConversationIndexEntry(id, name, providerId, participants, createdAtMillis,
+                messages.size(), lastUpdatedMillis, previewOf(List.of(), messages));
+    }
+
+    ConversationIndexEntry withAppended(List<ChatMessage> appended, int count) {
+        var last = appended.get(appended.size() - 1);
+        return new ConversationIndexEntry(id, name, providerId, participants, createdAtMillis,
+                count, Math.max(lastUpdatedMillis, last.timestampMillis()), previewOf(preview, appended));
+    }
+
+    Conversation toConversation(List<ChatMessage> messages) {
+        return new Conversation(id, name, providerId, new ArrayList<>(messages), createdAtMillis, participants);
+    }
+
+    private static List<ChatMessage> previewOf(List<ChatMessage> current, List<ChatMessage> appended) {
+        var tail = appended.subList(Math.max(0, appended.size() - PREVIEW_MESSAGES), appended.size());
+        var result = new ArrayList<ChatMessage>(PREVIEW_MESSAGES);
+        int keep = Math.min(current.size(), PREVIEW_MESSAGES - tail.size());
+        result.addAll(current.subList(current.size() - keep, current.size()));
+        for (var message : tail) {
+            result.add(new ChatMessage(message.participant(), displayText(message),
+                    message.timestampMillis(), List.of()));
+        }
+        return List.copyOf(result);
+    }
+
+    private static String displayText(ChatMessage message) {
+        var text = message.plainText();
+        return text.length() > PREVIEW_CHARS ? text.substring(0, PREVIEW_CHARS) + "…" : text;
+    }
+}
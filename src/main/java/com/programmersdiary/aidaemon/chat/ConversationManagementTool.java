@@ -40,14 +40,33 @@ public class ConversationManagementTool {
 
     @Tool(description = "List all conversations you are a participant in.")
     public String listMyConversations() {
-        var convs = conversationRepository.findAllForParticipant(currentBotName);
+        var convs = conversationRepository.findEntriesForParticipant(currentBotName);
         if (convs.isEmpty()) return "You are not in any conversations.";
         var sb = new StringBuilder("Your conversations:\n");
         for (var c : convs) {
             sb.append("- id: ").append(c.id())
                     .append(", name: ").append(c.name())
                     .append(", participants: ").append(c.participants())
-                    .append(", messages: ").append(c.messages().size())
+                    .append(", messages: ").append(c.messageCount())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Tool(description = "Full-text search over the messages of all conversations you are a participant in. Returns the best matches with conversation ID and message index; use them to look up the surrounding messages.")
+    public String searchConversations(
+            @ToolParam(description = "Words to search for") String query,
+            @ToolParam(description = "Maximum number of results. Omit for 10", required = false) Integer limit) {
+        if (query == null || query.isBlank()) return "Error: query is required";
+        var hits = conversationRepository.search(query, currentBotName, null,
+                limit != null && limit > 0 ? limit : 10);
+        if (hits.isEmpty()) return "No messages found for: " + query;
+        var sb = new StringBuilder("Search results:\n");
+        for (var h : hits) {
+            sb.append("- conversation: ").append(h.conversationId())
+                    .append(" (").append(h.conversationName()).append(")")
+                    .append(", message: ").append(h.messageIndex())
+                    .append(", ").append(h.participant()).append(": ").append(h.snippet())
                     .append("\n");
         }
         return sb.toString();
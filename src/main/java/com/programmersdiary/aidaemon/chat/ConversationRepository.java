@@ -1,8 +1,16 @@
 package com.programmersdiary.aidaemon.chat;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.programmersdiary.aidaemon.search.Bm25;
+import com.programmersdiary.aidaemon.storage.DurableFiles;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
@@ -12,104 +20,602 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
 
+/**
+ * Conversation store. A small index of every conversation (header fields, message count, last update)
+ * is kept in memory and in {@code index.json}; message bodies are read from each conversation's
+ * {@link SegmentedMessageLog} on demand and cached in an LRU bounded by conversation and message count.
+ * Message text is also kept in a {@link MessageSearchIndex}, persisted to {@code search-index.smile}.
+ * Logs of conversations that are idle and not cached are archived and restored when next used.
+ * A rolling {@link HistorySummary} of older messages may be kept next to each conversation's header.
+ */
 @Repository
 public class ConversationRepository {
 
+    private static final Logger log = LoggerFactory.getLogger(ConversationRepository.class);
+
+    static final String INDEX_FILE = "index.json";
+    static final String HEADER_FILE = "header.json";
+    static final String LEGACY_FILE = "conversation.json";
+    static final String MESSAGES_DIR = "messages";
+    static final String SEARCH_INDEX_FILE = "search-index.smile";
+    static final String HISTORY_SUMMARY_FILE = "summary.json";
+    static final int SNIPPET_CHARS = 160;
+    static final int MAX_DISPLAY_HISTORIES = 64;
+    static final int MAX_HISTORY_SUMMARIES = 256;
+
     private final ObjectMapper objectMapper = new ObjectMapper()
             .enable(SerializationFeature.INDENT_OUTPUT);
+    private final ObjectMapper recordMapper = new ObjectMapper();
+    private final ObjectMapper searchMapper = new ObjectMapper(new SmileFactory());
     private final Path conversationsDir;
-    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+    private final ConversationStorageConfig config;
+    private final Map<String, ConversationIndexEntry> index = new ConcurrentHashMap<>();
+    private final ParticipantIndex participantIndex = new ParticipantIndex();
+    private final MessageSearchIndex searchIndex = new MessageSearchIndex();
+    private final Map<String, SegmentedMessageLog> logs = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Conversation> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, DisplayHistory> displayHistories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DisplayHistory> eldest) {
+            return size() > MAX_DISPLAY_HISTORIES;
+        }
+    };
+    private final Map<String, Optional<HistorySummary>> historySummaries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Optional<HistorySummary>> eldest) {
+            return size() > MAX_HISTORY_SUMMARIES;
+        }
+    };
+    private long cachedMessages;
+    private final AtomicBoolean indexDirty = new AtomicBoolean();
+    private final Set<String> pendingCompactions = ConcurrentHashMap.newKeySet();
+    private final Set<String> archived = ConcurrentHashMap.newKeySet();
+    private final AtomicLong rehydrations = new AtomicLong();
+    private final AtomicLong rehydrationNanos = new AtomicLong();
+    private final LongAccumulator maxRehydrationNanos = new LongAccumulator(Math::max, 0);
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "conversation-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(2, r -> {
+        var thread = new Thread(r, "conversation-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConversationRepository(String configDir) {
+        this(configDir, ConversationStorageConfig.defaults());
+    }
 
+    @Autowired
     public ConversationRepository(
-            @Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir) {
+            @Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir,
+            ConversationStorageConfig config) {
         this.conversationsDir = Path.of(configDir, "conversations");
+        this.config = config;
+        this.flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
     }
 
     @PostConstruct
     void load() throws IOException {
         Files.createDirectories(conversationsDir);
+        readIndex();
+        var present = new HashSet<String>();
         try (var stream = Files.list(conversationsDir)) {
             stream.filter(Files::isDirectory)
                     .forEach(dir -> {
-                        var conversationFile = dir.resolve("conversation.json");
-                        if (Files.exists(conversationFile)) {
-                            try {
-                                var conv = loadAndMigrate(conversationFile);
-                                conversations.put(conv.id(), conv);
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
+                        var id = dir.getFileName().toString();
+                        try {
+                            DurableFiles.recover(dir.resolve(HISTORY_SUMMARY_FILE));
+                            if (index.containsKey(id) && Files.exists(dir.resolve(HEADER_FILE))) {
+                                present.add(id);
+                                return;
                             }
+                            var conv = loadConversation(dir);
+                            if (conv == null) return;
+                            putEntry(ConversationIndexEntry.of(conv));
+                            present.add(conv.id());
+                            indexDirty.set(true);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
                         }
                     });
         }
+        for (var id : List.copyOf(index.keySet())) {
+            if (!present.contains(id)) {
+                removeEntry(id);
+                indexDirty.set(true);
+            }
+        }
+        flushIndex();
+        for (var id : index.keySet()) {
+            if (logFor(id).isArchived()) archived.add(id);
+        }
+        readSearchIndex();
+        maintenance.execute(this::catchUpSearchIndex);
+        var flushMillis = Math.max(1, config.indexFlushMillis());
+        maintenance.scheduleWithFixedDelay(this::flushIndex, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        var searchFlushMillis = Math.max(1, config.searchFlushMillis());
+        maintenance.scheduleWithFixedDelay(this::flushSearchIndex, searchFlushMillis, searchFlushMillis,
+                TimeUnit.MILLISECONDS);
+        if (config.archiveIdleMillis() > 0) {
+            var checkMillis = Math.max(1, config.archiveCheckMillis());
+            maintenance.scheduleWithFixedDelay(this::archiveIdleConversations, checkMillis, checkMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flushes pending messages before stopping the flusher, and again afterwards for appends that raced the
+     * shutdown and whose delayed flush was dropped. Appends after the shutdown are written synchronously.
+     */
+    @PreDestroy
+    void shutdown() {
+        flushLogs();
+        flusher.shutdown();
+        maintenance.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+            maintenance.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushLogs();
+        flushIndex();
+        flushSearchIndex();
+    }
+
+    private void flushLogs() {
+        logs.values().forEach(messageLog -> {
+            try {
+                messageLog.flush();
+            } catch (UncheckedIOException e) {
+                log.error("Failed to flush pending messages on shutdown: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void readIndex() {
+        try {
+            DurableFiles.readJson(conversationsDir.resolve(INDEX_FILE), recordMapper,
+                            new TypeReference<List<ConversationIndexEntry>>() {})
+                    .ifPresent(entries -> entries.forEach(this::putEntry));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable conversation index, rebuilding from headers: {}", e.getMessage());
+            index.clear();
+            participantIndex.clear();
+        }
+    }
+
+    private void flushIndex() {
+        if (!indexDirty.getAndSet(false)) return;
+        try {
+            DurableFiles.writeJson(conversationsDir.resolve(INDEX_FILE), recordMapper, List.copyOf(index.values()));
+        } catch (IOException e) {
+            indexDirty.set(true);
+            log.warn("Failed to write conversation index: {}", e.getMessage());
+        }
+    }
+
+    private void readSearchIndex() {
+        try {
+            DurableFiles.readJson(conversationsDir.resolve(SEARCH_INDEX_FILE), searchMapper,
+                            MessageSearchIndex.Snapshot.class)
+                    .ifPresent(searchIndex::restore);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable search index, rebuilding from message logs: {}", e.getMessage());
+            searchIndex.clear();
+        }
+    }
+
+    /**
+     * Indexes messages written while the search index was not persisted. Conversations whose index is
+     * already complete are skipped without reading their logs.
+     */
+    private void catchUpSearchIndex() {
+        for (var id : searchIndex.conversationIds()) {
+            if (!index.containsKey(id)) searchIndex.remove(id);
+        }
+        for (var id : List.copyOf(index.keySet())) {
+            var entry = index.get(id);
+            if (entry == null || searchIndex.indexedCount(id) == entry.messageCount()) continue;
+            var messageLog = logFor(id);
+            synchronized (messageLog) {
+                if (!index.containsKey(id)) continue;
+                try {
+                    ensureHot(id, messageLog);
+                    var messages = messageLog.readAll();
+                    int indexed = searchIndex.indexedCount(id);
+                    if (indexed > messages.size()) {
+                        searchIndex.remove(id);
+                        indexed = 0;
+                    }
+                    searchIndex.add(id, indexed, messages.subList(indexed, messages.size()));
+                } catch (UncheckedIOException e) {
+                    log.warn("Failed to index conversation {} for search: {}", id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void flushSearchIndex() {
+        if (!searchIndex.takeDirty()) return;
+        try {
+            DurableFiles.writeJson(conversationsDir.resolve(SEARCH_INDEX_FILE), searchMapper, searchIndex.snapshot());
+        } catch (IOException e) {
+            searchIndex.markDirty();
+            log.warn("Failed to write search index: {}", e.getMessage());
+        }
+    }
+
+    private Conversation loadConversation(Path dir) throws IOException {
+        var header = DurableFiles.readJson(dir.resolve(HEADER_FILE), objectMapper, ConversationHeader.class);
+        if (header.isPresent()) {
+            return header.get().toConversation(logFor(header.get().id()).readAll());
+        }
+        var legacyFile = dir.resolve(LEGACY_FILE);
+        if (Files.exists(legacyFile)) {
+            var conv = loadAndMigrate(legacyFile);
+            writeHeader(conv);
+            logFor(conv.id()).rewrite(conv.messages());
+            Files.delete(legacyFile);
+            log.info("Migrated conversation {} to segmented message log", conv.id());
+            return conv;
+        }
+        return null;
     }
 
     private Conversation loadAndMigrate(Path conversationFile) throws IOException {
         var node = objectMapper.readTree(conversationFile.toFile());
         var conv = objectMapper.treeToValue(node, Conversation.class);
+        var messages = conv.messages() != null ? new ArrayList<>(conv.messages()) : new ArrayList<ChatMessage>();
 
-        if (conv.participants() != null) return conv;
+        if (conv.participants() != null) {
+            return new Conversation(conv.id(), conv.name(), conv.providerId(),
+                    messages, conv.createdAtMillis(), conv.participants());
+        }
 
         var p1Node = node.get("participant1");
         var p2Node = node.get("participant2");
         var p1 = p1Node != null && !p1Node.isNull() ? p1Node.asText() : null;
         var p2 = p2Node != null && !p2Node.isNull() ? p2Node.asText() : null;
 
-        if (p1 == null && p2 == null) return conv;
-
         var parts = new ArrayList<String>();
         if (p1 != null && !p1.isBlank()) parts.add(p1);
         if (p2 != null && !p2.isBlank()) parts.add(p2);
-        var migrated = new Conversation(conv.id(), conv.name(), conv.providerId(),
-                conv.messages(), conv.createdAtMillis(), List.copyOf(parts));
-        persist(migrated);
-        return migrated;
+        return new Conversation(conv.id(), conv.name(), conv.providerId(),
+                messages, conv.createdAtMillis(), parts.isEmpty() ? null : List.copyOf(parts));
     }
 
+    /** Loads every conversation; those not already cached are read without being added to the cache. */
     public List<Conversation> findAll() {
-        return List.copyOf(conversations.values());
+        return index.keySet().stream()
+                .map(this::findUncached)
+                .flatMap(Optional::stream)
+                .toList();
     }
 
     public List<Conversation> findAllForParticipant(String participant) {
         if (participant == null) return findAll();
-        return conversations.values().stream()
-                .filter(c -> isVisibleTo(c, participant))
+        return findEntriesForParticipant(participant).stream()
+                .map(e -> findUncached(e.id()))
+                .flatMap(Optional::stream)
                 .toList();
     }
 
-    private boolean isVisibleTo(Conversation c, String participant) {
-        if (c.participants() != null && !c.participants().isEmpty()) {
-            return c.participants().contains(participant);
-        }
-        return true;
+    public List<ConversationSummary> findSummaries(String participant) {
+        return findEntriesForParticipant(participant).stream().map(ConversationSummary::of).toList();
+    }
+
+    /** Served from the participant index, so the cost grows with the result rather than the store. */
+    List<ConversationIndexEntry> findEntriesForParticipant(String participant) {
+        if (participant == null) return List.copyOf(index.values());
+        return participantIndex.conversationIdsFor(participant).stream()
+                .map(index::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     public Optional<Conversation> findById(String id) {
-        return Optional.ofNullable(conversations.get(id));
+        var cached = cacheGet(id);
+        if (cached != null) return Optional.of(cached);
+        if (!index.containsKey(id)) return Optional.empty();
+        var messageLog = logFor(id);
+        synchronized (messageLog) {
+            cached = cacheGet(id);
+            if (cached != null) return Optional.of(cached);
+            var conv = readFromLog(id, messageLog);
+            if (conv == null) return Optional.empty();
+            cachePut(conv);
+            return Optional.of(conv);
+        }
+    }
+
+    private Optional<Conversation> findUncached(String id) {
+        var cached = cacheGet(id);
+        if (cached != null) return Optional.of(cached);
+        var messageLog = logFor(id);
+        synchronized (messageLog) {
+            return Optional.ofNullable(readFromLog(id, messageLog));
+        }
+    }
+
+    private Conversation readFromLog(String id, SegmentedMessageLog messageLog) {
+        var entry = index.get(id);
+        if (entry == null) return null;
+        ensureHot(id, messageLog);
+        var messages = messageLog.readAll();
+        if (messages.size() != entry.messageCount() || (entry.preview().isEmpty() && !messages.isEmpty())) {
+            putEntry(entry.withHistory(messages));
+            indexDirty.set(true);
+        }
+        return entry.toConversation(messages);
+    }
+
+    /** Copy whose message list is safe to read while other threads keep appending to the conversation. */
+    public Optional<Conversation> findSnapshotById(String id) {
+        var conv = findById(id).orElse(null);
+        if (conv == null) return Optional.empty();
+        synchronized (logFor(id)) {
+            return Optional.of(new Conversation(conv.id(), conv.name(), conv.providerId(),
+                    List.copyOf(conv.messages()), conv.createdAtMillis(), conv.participants()));
+        }
+    }
+
+    /** Copies only the requested range; {@code from} beyond the end yields an empty page. */
+    public Optional<MessagePage> findMessages(String id, int from, int limit) {
+        if (from < 0 || limit < 0) throw new IllegalArgumentException("from and limit must not be negative");
+        var conv = findById(id).orElse(null);
+        if (conv == null) return Optional.empty();
+        synchronized (logFor(id)) {
+            var messages = conv.messages();
+            int start = Math.min(from, messages.size());
+            int end = (int) Math.min((long) start + limit, messages.size());
+            return Optional.of(new MessagePage(start, messages.size(), List.copyOf(messages.subList(start, end))));
+        }
+    }
+
+    /**
+     * Display text of non-tool messages {@code from} (inclusive) to {@code to} (exclusive), at most
+     * {@code maxChars} of it when positive. Served from text kept per message, so paging neither copies
+     * the conversation nor parses its messages again.
+     */
+    public Optional<HistoryPage> findHistory(String id, int from, int to, int maxChars) {
+        var conv = findById(id).orElse(null);
+        if (conv == null) return Optional.empty();
+        synchronized (logFor(id)) {
+            DisplayHistory history;
+            synchronized (displayHistories) {
+                history = displayHistories.computeIfAbsent(id, k -> new DisplayHistory());
+            }
+            history.extend(conv.messages());
+            return Optional.of(history.page(from, to, maxChars));
+        }
+    }
+
+    /** Ranked matches in conversations visible to {@code participant} (all when null), optionally in one conversation. */
+    public List<SearchHit> search(String query, String participant, String conversationId, int limit) {
+        Set<String> visible = participant != null ? participantIndex.conversationIdsFor(participant) : index.keySet();
+        var hits = searchIndex.search(query, id -> visible.contains(id)
+                && (conversationId == null || conversationId.equals(id)), limit);
+        var terms = Bm25.tokenize(query);
+        var result = new ArrayList<SearchHit>(hits.size());
+        for (var hit : hits) {
+            var conv = findById(hit.conversationId()).orElse(null);
+            if (conv == null) continue;
+            ChatMessage message;
+            synchronized (logFor(hit.conversationId())) {
+                if (hit.messageIndex() >= conv.messages().size()) continue;
+                message = conv.messages().get(hit.messageIndex());
+            }
+            result.add(new SearchHit(conv.id(), conv.name(), hit.messageIndex(), message.participant(),
+                    message.timestampMillis(), snippet(message.plainText(), terms),
+                    hit.score()));
+        }
+        return result;
+    }
+
+    private static String snippet(String text, List<String> terms) {
+        var lower = text.toLowerCase(Locale.ROOT);
+        int match = terms.stream().mapToInt(lower::indexOf).filter(i -> i >= 0).min().orElse(0);
+        int start = Math.max(0, Math.min(match - SNIPPET_CHARS / 4, text.length() - SNIPPET_CHARS));
+        int end = Math.min(text.length(), start + SNIPPET_CHARS);
+        return (start > 0 ? "…" : "") + text.substring(start, end) + (end < text.length() ? "…" : "");
     }
 
+    /**
+     * Read on every turn, so summaries are cached and the file is read only once per conversation. Temp files
+     * of an interrupted save are removed by {@link #load()}, not here, where they could be an ongoing save.
+     */
+    public Optional<HistorySummary> findHistorySummary(String id) {
+        if (!index.containsKey(id)) return Optional.empty();
+        synchronized (historySummaries) {
+            var cached = historySummaries.get(id);
+            if (cached != null) return cached;
+        }
+        synchronized (logFor(id)) {
+            if (!index.containsKey(id)) return Optional.empty();
+            synchronized (historySummaries) {
+                var cached = historySummaries.get(id);
+                if (cached != null) return cached;
+            }
+            var summary = readHistorySummary(id);
+            synchronized (historySummaries) {
+                historySummaries.put(id, summary);
+            }
+            return summary;
+        }
+    }
+
+    private Optional<HistorySummary> readHistorySummary(String id) {
+        var file = conversationsDir.resolve(id).resolve(HISTORY_SUMMARY_FILE);
+        try {
+            return Files.exists(file) ? Optional.ofNullable(recordMapper.readValue(file.toFile(), HistorySummary.class))
+                    : Optional.empty();
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable history summary of conversation {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Ignored when the conversation was deleted meanwhile, so a late summarizer never recreates its directory. */
+    public void saveHistorySummary(String id, HistorySummary summary) {
+        if (!index.containsKey(id)) return;
+        synchronized (logFor(id)) {
+            if (!index.containsKey(id)) return;
+            try {
+                DurableFiles.writeJson(conversationsDir.resolve(id).resolve(HISTORY_SUMMARY_FILE), recordMapper,
+                        summary);
+            } catch (IOException e) {
+                synchronized (historySummaries) {
+                    historySummaries.remove(id);
+                }
+                throw new UncheckedIOException(e);
+            }
+            synchronized (historySummaries) {
+                historySummaries.put(id, Optional.of(summary));
+            }
+        }
+    }
+
+    /** Returns the conversation as stored, with the full history when the given message list was stale. */
     public Conversation save(Conversation conversation) {
-        conversations.put(conversation.id(), conversation);
-        persist(conversation);
-        return conversation;
+        var messageLog = logFor(conversation.id());
+        var stored = conversation;
+        CompletableFuture<Void> written;
+        synchronized (messageLog) {
+            var existing = index.get(conversation.id());
+            if (existing == null || !ConversationHeader.of(existing).equals(ConversationHeader.of(conversation))) {
+                writeHeader(conversation);
+            }
+            ensureHot(conversation.id(), messageLog);
+            int indexed = messageLog.size();
+            written = appendUnsavedMessages(conversation, messageLog);
+            var messages = conversation.messages() != null ? conversation.messages() : List.<ChatMessage>of();
+            if (messages.size() > indexed) {
+                searchIndex.add(conversation.id(), indexed, messages.subList(indexed, messages.size()));
+            }
+            if (messages.size() < messageLog.size()) {
+                // A stale copy: keep its header fields but cache and index the history the log holds.
+                stored = new Conversation(conversation.id(), conversation.name(), conversation.providerId(),
+                        messageLog.readAll(), conversation.createdAtMillis(), conversation.participants());
+            }
+            putEntry(ConversationIndexEntry.of(stored)
+                    .withMessageCount(messageLog.size(), System.currentTimeMillis()));
+            indexDirty.set(true);
+            // The cached list grows in place on append, so it must not be the caller's.
+            cachePut(new Conversation(stored.id(), stored.name(), stored.providerId(),
+                    new ArrayList<>(stored.messages() != null ? stored.messages() : List.of()),
+                    stored.createdAtMillis(), stored.participants()));
+        }
+        awaitDurable(written);
+        scheduleCompactionIfNeeded(conversation.id(), messageLog);
+        return stored;
+    }
+
+    public void addMessage(String conversationId, ChatMessage message) {
+        addMessages(conversationId, List.of(message));
+    }
+
+    /**
+     * Serialized per conversation by the conversation's log, so unrelated conversations never contend.
+     * Conversations that are not cached are appended to on disk without loading their history.
+     * The lock is released before waiting for the write, so concurrent writers share one batch.
+     */
+    public void addMessages(String conversationId, List<ChatMessage> messages) {
+        if (messages.isEmpty() || !index.containsKey(conversationId)) return;
+        var messageLog = logFor(conversationId);
+        CompletableFuture<Void> written = null;
+        synchronized (messageLog) {
+            var entry = index.get(conversationId);
+            if (entry == null) return;
+            ensureHot(conversationId, messageLog);
+            int firstIndex = messageLog.size();
+            for (var message : messages) {
+                written = messageLog.append(message);
+            }
+            synchronized (cache) {
+                var conv = cache.get(conversationId);
+                if (conv != null) {
+                    conv.messages().addAll(messages);
+                    cachedMessages += messages.size();
+                    evictIfNeeded(conversationId);
+                }
+            }
+            putEntry(entry.withAppended(messages, messageLog.size()));
+            searchIndex.add(conversationId, firstIndex, messages);
+            indexDirty.set(true);
+        }
+        awaitDurable(written);
+        scheduleCompactionIfNeeded(conversationId, messageLog);
     }
 
-    public synchronized void addMessage(String conversationId, ChatMessage message) {
-        var conv = conversations.get(conversationId);
-        if (conv == null) return;
-        conv.messages().add(message);
-        persist(conv);
+    /** Callers serialize per conversation (log lock or single-threaded load). */
+    private void putEntry(ConversationIndexEntry entry) {
+        var previous = index.put(entry.id(), entry);
+        participantIndex.update(entry.id(), previous != null ? previous.participants() : null, entry.participants());
+    }
+
+    private boolean removeEntry(String id) {
+        var removed = index.remove(id);
+        if (removed == null) return false;
+        participantIndex.remove(id, removed.participants());
+        return true;
+    }
+
+    private void awaitDurable(CompletableFuture<Void> written) {
+        if (written == null || config.durabilityMode() != DurabilityMode.BATCHED) return;
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
     }
 
     public boolean deleteById(String id) {
-        var conversation = conversations.remove(id);
-        if (conversation == null) return false;
-        var convDir = conversationsDir.resolve(id);
+        if (!index.containsKey(id)) return false;
+        var messageLog = logFor(id);
+        synchronized (messageLog) {
+            if (!removeEntry(id)) return false;
+            indexDirty.set(true);
+            cacheRemove(id);
+            synchronized (displayHistories) {
+                displayHistories.remove(id);
+            }
+            synchronized (historySummaries) {
+                historySummaries.remove(id);
+            }
+            searchIndex.remove(id);
+            archived.remove(id);
+            logs.remove(id, messageLog);
+            messageLog.discard();
+            deleteDirectory(conversationsDir.resolve(id));
+        }
+        return true;
+    }
+
+    private void deleteDirectory(Path convDir) {
         try {
             if (Files.exists(convDir)) {
                 try (var walk = Files.walk(convDir)) {
@@ -126,14 +632,134 @@ public class ConversationRepository {
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        return true;
     }
 
-    private void persist(Conversation conversation) {
+    /**
+     * Messages are append-only: only the tail beyond what the log already holds is written. A list
+     * shorter than the log is a stale copy and never truncates persisted history.
+     */
+    private CompletableFuture<Void> appendUnsavedMessages(Conversation conversation, SegmentedMessageLog messageLog) {
+        var messages = conversation.messages() != null ? conversation.messages() : List.<ChatMessage>of();
+        CompletableFuture<Void> written = null;
+        for (int i = messageLog.size(); i < messages.size(); i++) {
+            written = messageLog.append(messages.get(i));
+        }
+        return written;
+    }
+
+    private Conversation cacheGet(String id) {
+        synchronized (cache) {
+            return cache.get(id);
+        }
+    }
+
+    private void cachePut(Conversation conversation) {
+        synchronized (cache) {
+            var previous = cache.put(conversation.id(), conversation);
+            if (previous != null) cachedMessages -= previous.messages().size();
+            cachedMessages += conversation.messages().size();
+            evictIfNeeded(conversation.id());
+        }
+    }
+
+    private void cacheRemove(String id) {
+        synchronized (cache) {
+            var removed = cache.remove(id);
+            if (removed != null) cachedMessages -= removed.messages().size();
+        }
+    }
+
+    /** Evicts least recently used conversations, never the one just touched. Caller holds the cache lock. */
+    private void evictIfNeeded(String keepId) {
+        var it = cache.entrySet().iterator();
+        while ((cache.size() > config.cacheMaxConversations() || cachedMessages > config.cacheMaxMessages())
+                && it.hasNext()) {
+            var eldest = it.next();
+            if (eldest.getKey().equals(keepId)) continue;
+            cachedMessages -= eldest.getValue().messages().size();
+            it.remove();
+        }
+    }
+
+    /** Unlike {@link #cacheGet}, does not count as a use for eviction order. */
+    private boolean isCached(String id) {
+        synchronized (cache) {
+            return cache.containsKey(id);
+        }
+    }
+
+    int cachedConversationCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** Caller holds the conversation's log lock. */
+    private void ensureHot(String id, SegmentedMessageLog messageLog) {
+        if (!archived.remove(id)) return;
+        long start = System.nanoTime();
+        messageLog.rehydrate();
+        long elapsed = System.nanoTime() - start;
+        rehydrations.incrementAndGet();
+        rehydrationNanos.addAndGet(elapsed);
+        maxRehydrationNanos.accumulate(elapsed);
+    }
+
+    /** Archives conversations not updated within the idle age, skipping any that are cached (recently read). */
+    void archiveIdleConversations() {
+        long cutoff = System.currentTimeMillis() - config.archiveIdleMillis();
+        int count = 0;
+        for (var entry : List.copyOf(index.values())) {
+            var id = entry.id();
+            if (entry.lastUpdatedMillis() >= cutoff || archived.contains(id)) continue;
+            var messageLog = logFor(id);
+            synchronized (messageLog) {
+                var current = index.get(id);
+                if (current == null || current.lastUpdatedMillis() >= cutoff || isCached(id)) continue;
+                try {
+                    if (messageLog.archive()) {
+                        archived.add(id);
+                        count++;
+                    }
+                } catch (UncheckedIOException e) {
+                    log.warn("Failed to archive conversation {}: {}", id, e.getMessage());
+                }
+            }
+        }
+        if (count > 0) log.info("Archived {} idle conversations", count);
+    }
+
+    public ConversationStorageStats stats() {
+        long count = rehydrations.get();
+        int cold = archived.size();
+        return new ConversationStorageStats(Math.max(0, index.size() - cold), cold, cachedConversationCount(), count,
+                count > 0 ? rehydrationNanos.get() / 1e6 / count : 0, maxRehydrationNanos.get() / 1e6);
+    }
+
+    private void scheduleCompactionIfNeeded(String conversationId, SegmentedMessageLog messageLog) {
+        if (messageLog.sealedSegmentCount() < config.compactionSegmentThreshold()) return;
+        if (!pendingCompactions.add(conversationId)) return;
+        maintenance.execute(() -> {
+            try {
+                if (logs.get(conversationId) == messageLog) messageLog.compact();
+            } catch (Exception e) {
+                log.warn("Compaction failed for conversation {}: {}", conversationId, e.getMessage());
+            } finally {
+                pendingCompactions.remove(conversationId);
+            }
+        });
+    }
+
+    private SegmentedMessageLog logFor(String conversationId) {
+        return logs.computeIfAbsent(conversationId, id -> new SegmentedMessageLog(
+                conversationsDir.resolve(id).resolve(MESSAGES_DIR), config.codec(), config.segmentMaxBytes(),
+                config.durabilityMode(), flusher, config.writeWindowMillis()));
+    }
+
+    private void writeHeader(Conversation conversation) {
         try {
-            var convDir = conversationsDir.resolve(conversation.id());
-            Files.createDirectories(convDir);
-            objectMapper.writeValue(convDir.resolve("conversation.json").toFile(), conversation);
+            DurableFiles.writeJson(conversationsDir.resolve(conversation.id()).resolve(HEADER_FILE),
+                    objectMapper, ConversationHeader.of(conversation));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
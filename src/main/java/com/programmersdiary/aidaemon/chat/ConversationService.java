@@ -47,7 +47,7 @@ public class ConversationService {
 
     public Conversation addParticipant(String conversationId, String participantName) {
         validateParticipant(participantName);
-        var conv = conversationRepository.findById(conversationId)
+        var conv = conversationRepository.findSnapshotById(conversationId)
                 .orElseThrow(() -> new IllegalArgumentException("Conversation not found: " + conversationId));
         var current = new ArrayList<>(conv.participants() != null ? conv.participants() : List.of());
         if (!current.contains(participantName)) {
@@ -61,20 +61,28 @@ public class ConversationService {
     void triggerBotReplyAsync(String conversationId, String botName) {
         CompletableFuture.runAsync(() -> {
             try {
-                var conv = conversationRepository.findById(conversationId).orElse(null);
+                var conv = conversationRepository.findSnapshotById(conversationId).orElse(null);
                 if (conv == null || conv.providerId() == null || conv.providerId().isBlank()) return;
                 var bot = botService.getBot(botName);
                 var senderIdentity = lastBotSenderOf(conv, botName);
                 var result = bot.chat(conv.providerId(), conv.messages(), conversationId, senderIdentity);
-                for (var toolMsg : result.toolMessages()) {
-                    conversationRepository.addMessage(conversationId, toolMsg);
-                }
+                conversationRepository.addMessages(conversationId, result.toolMessages());
             } catch (Exception e) {
                 log.error("triggerBotReplyAsync failed for bot='{}' conv='{}'", botName, conversationId, e);
             }
         }, BOT_EXECUTOR);
     }
 
+    /** Warms the bot's context reads while its reply task loads the conversation. */
+    private void prefetchContext(String botName, List<FileAttachment> files) {
+        try {
+            var bot = botService.getBot(botName);
+            if (bot != null) bot.prefetch(files);
+        } catch (Exception e) {
+            log.debug("Context prefetch failed for bot='{}'", botName, e);
+        }
+    }
+
     private static String lastBotSenderOf(Conversation conv, String excludeBotName) {
         if (conv.messages() == null) return null;
         for (int i = conv.messages().size() - 1; i >= 0; i--) {
@@ -122,6 +130,7 @@ public class ConversationService {
 
         var botsToNotify = notifyParticipants != null ? notifyParticipants : List.<String>of();
         for (var botName : botsToNotify) {
+            prefetchContext(botName, files);
             triggerBotReplyAsync(conversationId, botName);
         }
     }
@@ -137,8 +146,9 @@ public class ConversationService {
                 .toList();
     }
 
+    /** A snapshot: the stored message list keeps growing under concurrent bot replies. */
     public Conversation get(String conversationId) {
-        return conversationRepository.findById(conversationId)
+        return conversationRepository.findSnapshotById(conversationId)
                 .orElseThrow(() -> new IllegalArgumentException("Conversation not found: " + conversationId));
     }
 
@@ -150,6 +160,29 @@ public class ConversationService {
         return conversationRepository.findAllForParticipant(participantId);
     }
 
+    public List<ConversationSummary> listSummaries(String participantId) {
+        return conversationRepository.findSummaries(participantId);
+    }
+
+    public MessagePage getMessages(String conversationId, int from, int limit) {
+        return conversationRepository.findMessages(conversationId, from, limit)
+                .orElseThrow(() -> new IllegalArgumentException("Conversation not found: " + conversationId));
+    }
+
+    public List<SearchHit> search(String query, String participantId, String conversationId, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return conversationRepository.search(query, participantId, conversationId, limit);
+    }
+
+    public ConversationStorageStats storageStats() {
+        return conversationRepository.stats();
+    }
+
     public void delete(String conversationId) {
         conversationRepository.deleteById(conversationId);
     }
@@ -0,0 +1,95 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ConversationStorageConfig {
+
+    private final long segmentMaxBytes;
+    private final int compactionSegmentThreshold;
+    private final int cacheMaxConversations;
+    private final long cacheMaxMessages;
+    private final long indexFlushMillis;
+    private final DurabilityMode durabilityMode;
+    private final long writeWindowMillis;
+    private final MessageCodec codec;
+    private final long searchFlushMillis;
+    private final long archiveIdleMillis;
+    private final long archiveCheckMillis;
+
+    public ConversationStorageConfig(
+            @Value("${aidaemon.conversations.segment-max-bytes:4194304}") long segmentMaxBytes,
+            @Value("${aidaemon.conversations.compaction-segment-threshold:8}") int compactionSegmentThreshold,
+            @Value("${aidaemon.conversations.cache-max-conversations:256}") int cacheMaxConversations,
+            @Value("${aidaemon.conversations.cache-max-messages:100000}") long cacheMaxMessages,
+            @Value("${aidaemon.conversations.index-flush-millis:1000}") long indexFlushMillis,
+            @Value("${aidaemon.conversations.durability:batched}") String durabilityMode,
+            @Value("${aidaemon.conversations.write-window-millis:50}") long writeWindowMillis,
+            @Value("${aidaemon.conversations.codec:smile}") String codec,
+            @Value("${aidaemon.conversations.search-flush-millis:30000}") long searchFlushMillis,
+            @Value("${aidaemon.conversations.archive-idle-millis:2592000000}") long archiveIdleMillis,
+            @Value("${aidaemon.conversations.archive-check-millis:3600000}") long archiveCheckMillis) {
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.compactionSegmentThreshold = compactionSegmentThreshold;
+        this.cacheMaxConversations = cacheMaxConversations;
+        this.cacheMaxMessages = cacheMaxMessages;
+        this.indexFlushMillis = indexFlushMillis;
+        this.durabilityMode = DurabilityMode.from(durabilityMode);
+        this.writeWindowMillis = writeWindowMillis;
+        this.codec = MessageCodec.named(codec);
+        this.searchFlushMillis = searchFlushMillis;
+        this.archiveIdleMillis = archiveIdleMillis;
+        this.archiveCheckMillis = archiveCheckMillis;
+    }
+
+    public static ConversationStorageConfig defaults() {
+        return new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "batched", 50, "smile", 30_000,
+                2_592_000_000L, 3_600_000);
+    }
+
+    public long segmentMaxBytes() {
+        return segmentMaxBytes;
+    }
+
+    public int compactionSegmentThreshold() {
+        return compactionSegmentThreshold;
+    }
+
+    public int cacheMaxConversations() {
+        return cacheMaxConversations;
+    }
+
+    public long cacheMaxMessages() {
+        return cacheMaxMessages;
+    }
+
+    public long indexFlushMillis() {
+        return indexFlushMillis;
+    }
+
+    public DurabilityMode durabilityMode() {
+        return durabilityMode;
+    }
+
+    public long writeWindowMillis() {
+        return writeWindowMillis;
+    }
+
+    public MessageCodec codec() {
+        return codec;
+    }
+
+    public long searchFlushMillis() {
+        return searchFlushMillis;
+    }
+
+    /** Conversations not updated for this long are archived; 0 disables archiving. */
+    public long archiveIdleMillis() {
+        return archiveIdleMillis;
+    }
+
+    public long archiveCheckMillis() {
+        return archiveCheckMillis;
+    }
+}
@@ -0,0 +1,10 @@
+package com.programmersdiary.aidaemon.chat;
+
+/** Hot conversations have their log in segments; cold ones are archived and restored on first access. */
+public record ConversationStorageStats(int hotConversations,
+                                       int coldConversations,
+                                       int cachedConversations,
+                                       long rehydrations,
+                                       double averageRehydrationMillis,
+                                       double maxRehydrationMillis) {
+}
@@ -0,0 +1,21 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.List;
+
+/** Conversation without its history, served from the conversation index. */
+public record ConversationSummary(String id,
+                                  String name,
+                                  String providerId,
+                                  List<String> participants,
+                                  Long createdAtMillis,
+                                  int messageCount,
+                                  Long lastMessageAt,
+                                  List<ChatMessage> preview) {
+
+    static ConversationSummary of(ConversationIndexEntry entry) {
+        var preview = entry.preview();
+        var lastMessageAt = preview.isEmpty() ? null : preview.get(preview.size() - 1).timestampMillis();
+        return new ConversationSummary(entry.id(), entry.name(), entry.providerId(), entry.participants(),
+                entry.createdAtMillis(), entry.messageCount(), lastMessageAt, preview);
+    }
+}
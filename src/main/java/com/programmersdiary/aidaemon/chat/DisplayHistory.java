@@ -0,0 +1,54 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Display text of one conversation's non-tool messages, computed once per message and extended with the
+ * tail of each new snapshot; a snapshot that does not continue the known one starts over. Callers hold
+ * the conversation's log lock.
+ */
+final class DisplayHistory {
+
+    private final List<String> participants = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private int rawCount;
+    private ChatMessage lastRaw;
+
+    void extend(List<ChatMessage> messages) {
+        if (messages.size() < rawCount || (rawCount > 0 && !messages.get(rawCount - 1).equals(lastRaw))) {
+            participants.clear();
+            texts.clear();
+            rawCount = 0;
+        }
+        for (var message : messages.subList(rawCount, messages.size())) {
+            if ("tool".equals(message.participant())) continue;
+            participants.add(message.participant());
+            texts.add(message.plainText());
+        }
+        rawCount = messages.size();
+        lastRaw = rawCount > 0 ? messages.get(rawCount - 1) : null;
+    }
+
+    /**
+     * Messages from {@code from} up to {@code to}, stopping before {@code maxChars} (when positive) would be
+     * exceeded. The first message is always included, cut to {@code maxChars}, so paging always advances.
+     */
+    HistoryPage page(int from, int to, int maxChars) {
+        int total = texts.size();
+        int start = Math.min(Math.max(from, 0), total);
+        int end = Math.min(to, total);
+        var entries = new ArrayList<HistoryPage.Entry>();
+        int chars = 0;
+        for (int i = start; i < end; i++) {
+            var text = texts.get(i);
+            if (maxChars > 0 && chars + text.length() > maxChars) {
+                if (!entries.isEmpty()) break;
+                text = text.substring(0, maxChars) + "…";
+            }
+            chars += text.length();
+            entries.add(new HistoryPage.Entry(i, participants.get(i), text));
+        }
+        return new HistoryPage(start, start + entries.size(), total, entries);
+    }
+}
@@ -0,0 +1,17 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.Locale;
+
+public enum DurabilityMode {
+    /** Every message is written and fsync'd before the call returns. */
+    SYNC,
+    /** Messages within the write window share one fsync'd write; callers wait for it. */
+    BATCHED,
+    /** Like {@link #BATCHED}, but callers return immediately; a crash may lose the last window. */
+    ASYNC;
+
+    public static DurabilityMode from(String value) {
+        if (value == null || value.isBlank()) return BATCHED;
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
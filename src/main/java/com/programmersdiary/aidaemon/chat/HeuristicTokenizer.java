@@ -0,0 +1,59 @@
+package com.programmersdiary.aidaemon.chat;
+
+/**
+ * Estimates tokens without a vocabulary: text is split into GPT-style pieces and each piece is costed by
+ * its shape. Common words are one token, long words one per six characters, CJK one per character,
+ * symbol runs one per two characters. Errs towards over-counting so budgets are not exceeded.
+ */
+final class HeuristicTokenizer implements Tokenizer {
+
+    static final HeuristicTokenizer INSTANCE = new HeuristicTokenizer();
+
+    private HeuristicTokenizer() {
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        int tokens = 0;
+        var matcher = PIECES.matcher(text);
+        while (matcher.find()) {
+            tokens += pieceTokens(text, matcher.start(), matcher.end());
+        }
+        return tokens;
+    }
+
+    private static int pieceTokens(String text, int start, int end) {
+        int ascii = 0;
+        int ideographs = 0;
+        int otherLetters = 0;
+        int symbols = 0;
+        for (int i = start; i < end; ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp < 0x80) {
+                if (Character.isLetterOrDigit(cp) || Character.isWhitespace(cp)) ascii++;
+                else symbols++;
+            } else if (isIdeographic(cp)) {
+                ideographs++;
+            } else if (Character.isLetterOrDigit(cp)) {
+                otherLetters++;
+            } else {
+                symbols++;
+            }
+        }
+        int tokens = ideographs + ceilDiv(otherLetters, 3) + ceilDiv(symbols, 2);
+        if (ascii > 0) tokens += ascii <= 8 ? 1 : ceilDiv(ascii, 6);
+        return Math.max(1, tokens);
+    }
+
+    private static boolean isIdeographic(int cp) {
+        var script = Character.UnicodeScript.of(cp);
+        return Character.isIdeographic(cp) || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
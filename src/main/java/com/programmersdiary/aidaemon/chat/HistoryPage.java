@@ -0,0 +1,13 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.List;
+
+/**
+ * Display text of a conversation's messages {@code from} (inclusive) to {@code to} (exclusive). Indices
+ * count only non-tool messages, as in the model's context; {@code total} is their number.
+ */
+public record HistoryPage(int from, int to, int total, List<Entry> messages) {
+
+    public record Entry(int index, String participant, String text) {
+    }
+}
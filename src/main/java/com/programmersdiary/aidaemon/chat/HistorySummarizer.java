@@ -0,0 +1,135 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.provider.ChatModelFactory;
+import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a rolling summary of the messages that no longer fit a conversation's context window. After a turn,
+ * messages dropped since the last update are folded into the previous summary by the conversation's provider
+ * on a background thread, at most one update per conversation at a time. Updates wait until enough new
+ * messages were dropped, so the summary (and with it the prompt prefix) changes only every few turns.
+ */
+@Service
+public class HistorySummarizer {
+
+    private static final Logger log = LoggerFactory.getLogger(HistorySummarizer.class);
+
+    static final int MAX_INPUT_CHARS = 32_000;
+    static final int MAX_MESSAGE_CHARS = 4_000;
+
+    private static final String INSTRUCTIONS = """
+            You maintain a running summary of the earliest part of a conversation that no longer fits \
+            in the assistant's context. Merge the previous summary with the new messages into one updated summary. \
+            Keep facts, decisions, names, numbers, files, open questions and commitments; drop greetings and small talk. \
+            Refer to participants by name. Reply with the summary only, at most %d characters.""";
+
+    private final ConversationRepository conversationRepository;
+    private final ProviderConfigRepository providerConfigRepository;
+    private final ChatModelFactory chatModelFactory;
+    private final boolean enabled;
+    private final int minNewMessages;
+    private final int maxSummaryChars;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "history-summarizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HistorySummarizer(ConversationRepository conversationRepository,
+                             ProviderConfigRepository providerConfigRepository,
+                             ChatModelFactory chatModelFactory,
+                             @Value("${aidaemon.context-window.summarize:false}") boolean enabled,
+                             @Value("${aidaemon.context-window.summarize-min-messages:10}") int minNewMessages,
+                             @Value("${aidaemon.context-window.summary-max-chars:4000}") int maxSummaryChars) {
+        this.conversationRepository = conversationRepository;
+        this.providerConfigRepository = providerConfigRepository;
+        this.chatModelFactory = chatModelFactory;
+        this.enabled = enabled;
+        this.minNewMessages = Math.max(1, minNewMessages);
+        this.maxSummaryChars = maxSummaryChars;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public HistorySummary summaryFor(String conversationId) {
+        if (!enabled || conversationId == null) return null;
+        return conversationRepository.findHistorySummary(conversationId)
+                .filter(s -> s.coveredMessages() > 0 && s.text() != null && !s.text().isBlank())
+                .orElse(null);
+    }
+
+    /**
+     * Schedules folding {@code dropped} (the conversation's non-tool messages before the context window,
+     * oldest first) into the summary. Does nothing while fewer than {@code summarize-min-messages} of them
+     * are not yet covered, or while an update for the conversation is already running.
+     */
+    public void summarizeAsync(String conversationId, String providerId, List<ChatMessage> dropped) {
+        if (!enabled || conversationId == null || providerId == null) return;
+        var current = conversationRepository.findHistorySummary(conversationId).orElse(null);
+        int covered = current != null ? current.coveredMessages() : 0;
+        if (dropped.size() - covered < minNewMessages || !running.add(conversationId)) return;
+        executor.execute(() -> {
+            try {
+                summarize(conversationId, providerId, current, dropped);
+            } catch (Exception e) {
+                log.warn("Summarizing history of conversation {} failed: {}", conversationId, e.getMessage());
+            } finally {
+                running.remove(conversationId);
+            }
+        });
+    }
+
+    private void summarize(String conversationId, String providerId, HistorySummary current,
+                           List<ChatMessage> dropped) {
+        var config = providerConfigRepository.findById(providerId).orElse(null);
+        if (config == null) return;
+        int covered = current != null ? current.coveredMessages() : 0;
+        var transcript = new StringBuilder();
+        int end = covered;
+        while (end < dropped.size() && (end == covered || transcript.length() < MAX_INPUT_CHARS)) {
+            var message = dropped.get(end);
+            var text = message.plainText();
+            if (text.length() > MAX_MESSAGE_CHARS) text = text.substring(0, MAX_MESSAGE_CHARS) + "…";
+            transcript.append('[').append(end).append("] ").append(message.participant()).append(": ")
+                    .append(text).append('\n');
+            end++;
+        }
+        var request = new StringBuilder();
+        if (current != null && current.text() != null && !current.text().isBlank()) {
+            request.append("Previous summary (messages 0 to ").append(covered - 1).append("):\n")
+                    .append(current.text()).append("\n\n");
+        }
+        request.append("New messages (").append(covered).append(" to ").append(end - 1).append("):\n")
+                .append(transcript);
+        var chatModel = chatModelFactory.create(config);
+        var options = chatModelFactory.promptOptions(config, List.of());
+        var messages = List.<Message>of(new SystemMessage(INSTRUCTIONS.formatted(maxSummaryChars)),
+                new UserMessage(request.toString()));
+        var response = chatModel.call(new Prompt(messages, options));
+        var output = response != null && response.getResult() != null ? response.getResult().getOutput() : null;
+        var text = output != null && output.getText() != null ? output.getText().strip() : "";
+        if (text.isEmpty()) return;
+        if (text.length() > maxSummaryChars) text = text.substring(0, maxSummaryChars) + "…";
+        conversationRepository.saveHistorySummary(conversationId,
+                new HistorySummary(text, end, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,11 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Rolling summary of the oldest part of a conversation: it covers the first {@code coveredMessages}
+ * non-tool messages, counted the same way as the indexes the context builder reports to the model.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record HistorySummary(String text, int coveredMessages, long updatedAtMillis) {
+}
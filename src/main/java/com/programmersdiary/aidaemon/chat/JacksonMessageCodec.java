@@ -0,0 +1,46 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+
+final class JacksonMessageCodec implements MessageCodec {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final ObjectMapper writer;
+
+    private JacksonMessageCodec(ObjectMapper writer) {
+        this.writer = writer;
+    }
+
+    static JacksonMessageCodec json() {
+        return new JacksonMessageCodec(JSON);
+    }
+
+    static JacksonMessageCodec smile() {
+        return new JacksonMessageCodec(SMILE);
+    }
+
+    @Override
+    public byte[] encode(ChatMessage message) throws IOException {
+        return writer.writeValueAsBytes(StoredMessage.from(message));
+    }
+
+    @Override
+    public ChatMessage decode(byte[] payload) throws IOException {
+        var reader = isSmile(payload) ? SMILE : JSON;
+        return reader.readValue(payload, StoredMessage.class).toChatMessage();
+    }
+
+    private static boolean isSmile(byte[] payload) {
+        if (payload.length < SMILE_HEADER.length) return false;
+        for (int i = 0; i < SMILE_HEADER.length; i++) {
+            if (payload[i] != SMILE_HEADER[i]) return false;
+        }
+        return true;
+    }
+}
@@ -14,6 +14,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class LoggingToolCallback implements ToolCallback {
 
@@ -81,47 +82,49 @@ public class LoggingToolCallback implements ToolCallback {
 
     @Override
     public String call(String toolInput) {
-        if (approvalService != null) {
-            var decision = requestApproval(toolInput);
-            if (!decision.approved()) return buildRejectionResult(toolInput, decision.note());
-            var result = executeWithTimeout(() -> delegate.call(toolInput), toolInput);
-            var resultWithNote = appendNote(result, decision.note());
-            log(toolInput, resultWithNote);
-            return resultWithNote;
-        }
-        var result = executeWithTimeout(() -> delegate.call(toolInput), toolInput);
-        log(toolInput, result);
-        return result;
+        return execute(toolInput, () -> delegate.call(toolInput), ToolCallOrder.current());
     }
 
+    /** When run by {@link ParallelToolCallingManager}, log entries are released in the order of the calls. */
     @Override
     public String call(String toolInput, ToolContext toolContext) {
+        return execute(toolInput, () -> delegate.call(toolInput, toolContext), ToolCallOrder.current());
+    }
+
+    /** The MCP server this tool comes from, or null for built-in tools. */
+    String serverName() {
+        return serverName;
+    }
+
+    private String execute(String toolInput, Supplier<String> execution, ToolCallOrder.Slot slot) {
         if (approvalService != null) {
             var decision = requestApproval(toolInput);
-            if (!decision.approved()) return buildRejectionResult(toolInput, decision.note());
-            var result = executeWithTimeout(() -> delegate.call(toolInput, toolContext), toolInput);
+            if (!decision.approved()) return buildRejectionResult(toolInput, decision.note(), slot);
+            var result = executeWithTimeout(execution, toolInput, slot);
             var resultWithNote = appendNote(result, decision.note());
-            log(toolInput, resultWithNote);
+            log(toolInput, resultWithNote, slot);
             return resultWithNote;
         }
-        var result = executeWithTimeout(() -> delegate.call(toolInput, toolContext), toolInput);
-        log(toolInput, result);
+        var result = executeWithTimeout(execution, toolInput, slot);
+        log(toolInput, result, slot);
         return result;
     }
 
-    private String executeWithTimeout(java.util.function.Supplier<String> execution, String toolInput) {
+    private String executeWithTimeout(Supplier<String> execution, String toolInput, ToolCallOrder.Slot slot) {
         if (toolExecutionTimeoutSeconds <= 0) {
             return execution.get();
         }
-        var execFuture = CompletableFuture.supplyAsync(execution);
+        // Tools this one calls, such as those reached through discovery, log into the same slot.
+        Supplier<String> task = slot != null ? () -> slot.bind(execution) : execution;
+        var execFuture = CompletableFuture.supplyAsync(task);
         try {
             return execFuture.get(toolExecutionTimeoutSeconds, TimeUnit.SECONDS);
         } catch (TimeoutException e) {
             execFuture.cancel(true);
-            return buildTimeoutResult(toolInput);
+            return buildTimeoutResult(toolInput, slot);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            return buildTimeoutResult(toolInput);
+            return buildTimeoutResult(toolInput, slot);
         } catch (ExecutionException e) {
             throw new RuntimeException(e.getCause());
         }
@@ -142,21 +145,18 @@ public class LoggingToolCallback implements ToolCallback {
         }
     }
 
-    private String buildRejectionResult(String toolInput, String note) {
+    private String buildRejectionResult(String toolInput, String note, ToolCallOrder.Slot slot) {
         var rejected = appendNote("Tool call rejected by user.", note);
-        log(toolInput, rejected);
+        log(toolInput, rejected, slot);
         return appendNote("Tool call was rejected by the user.", note);
     }
 
-    private String buildTimeoutResult(String toolInput) {
+    private String buildTimeoutResult(String toolInput, ToolCallOrder.Slot slot) {
         var toolName = delegate.getToolDefinition().name();
         var label = serverName != null ? serverName + " > " + toolName : toolName;
         var content = "[" + label + "]\nInput: " + toolInput
                 + "\nOutput: Tool execution timed out after " + toolExecutionTimeoutSeconds + "s.";
-        toolLog.add(ChatMessage.of("tool", content));
-        if (onToolChunk != null) {
-            onToolChunk.accept(new StreamChunk(StreamChunk.TYPE_TOOL, content));
-        }
+        record(content, slot);
         return "Tool execution timed out.";
     }
 
@@ -164,13 +164,23 @@ public class LoggingToolCallback implements ToolCallback {
         return (note != null && !note.isBlank()) ? output + "\nNote: " + note : output;
     }
 
-    private void log(String input, String output) {
+    private void log(String input, String output, ToolCallOrder.Slot slot) {
         var toolName = delegate.getToolDefinition().name();
         var label = serverName != null ? serverName + " > " + toolName : toolName;
-        var content = "[" + label + "]\nInput: " + input + "\nOutput: " + output;
-        toolLog.add(ChatMessage.of("tool", content));
-        if (onToolChunk != null) {
-            onToolChunk.accept(new StreamChunk(StreamChunk.TYPE_TOOL, content));
+        record("[" + label + "]\nInput: " + input + "\nOutput: " + output, slot);
+    }
+
+    private void record(String content, ToolCallOrder.Slot slot) {
+        Runnable entry = () -> {
+            toolLog.add(ChatMessage.of("tool", content));
+            if (onToolChunk != null) {
+                onToolChunk.accept(new StreamChunk(StreamChunk.TYPE_TOOL, content));
+            }
+        };
+        if (slot != null) {
+            slot.record(entry);
+        } else {
+            entry.run();
         }
     }
 
@@ -0,0 +1,10 @@
+package com.programmersdiary.aidaemon.chat;
+
+/**
+ * How much memory goes into a prompt. Memory within both limits is sent whole; larger memory is narrowed
+ * to the entries most relevant to the turn, and the model looks up the rest with {@code searchMemory}.
+ */
+public record MemoryBudget(int maxEntries, int maxChars) {
+
+    public static final MemoryBudget DEFAULT = new MemoryBudget(20, 4000);
+}
@@ -0,0 +1,24 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Record format of the conversation message log. Decoding detects the format of each record, so the
+ * configured codec can be changed without rewriting existing conversations.
+ */
+public interface MessageCodec {
+
+    byte[] encode(ChatMessage message) throws IOException;
+
+    ChatMessage decode(byte[] payload) throws IOException;
+
+    static MessageCodec named(String name) {
+        var normalized = name != null ? name.trim().toLowerCase(Locale.ROOT) : "";
+        return switch (normalized) {
+            case "json" -> JacksonMessageCodec.json();
+            case "", "smile" -> JacksonMessageCodec.smile();
+            default -> throw new IllegalArgumentException("Unknown conversation codec: " + name);
+        };
+    }
+}
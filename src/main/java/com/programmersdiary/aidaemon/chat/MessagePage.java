@@ -0,0 +1,7 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.List;
+
+/** Slice of a conversation's history starting at message index {@code from}. */
+public record MessagePage(int from, int total, List<ChatMessage> messages) {
+}
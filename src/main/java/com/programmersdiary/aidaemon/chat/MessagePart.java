@@ -0,0 +1,25 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.files.FileAttachment;
+
+/**
+ * One part of a message's content. Bot replies are stored as {@code {"parts":[...]}} and user messages with
+ * inline files as {@code {"user_parts":[...]}}; {@link ChatMessage} parses that JSON once into parts so
+ * readers never parse it again. Plain content is a single {@link Text} part.
+ */
+public sealed interface MessagePart {
+
+    /** Answer text of a bot reply, a text part of a user message, or plain content. */
+    record Text(String text) implements MessagePart {
+    }
+
+    record Reasoning(String text) implements MessagePart {
+    }
+
+    /** Tool call and result of a bot reply, or any other part type it recorded. */
+    record Tool(String text) implements MessagePart {
+    }
+
+    record File(FileAttachment file) implements MessagePart {
+    }
+}
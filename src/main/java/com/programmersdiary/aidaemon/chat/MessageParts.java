@@ -0,0 +1,68 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmersdiary.aidaemon.files.FileAttachment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/** Reads {@link MessagePart}s from the stored forms of message content. */
+final class MessageParts {
+
+    static final String PARTS = "parts";
+    static final String USER_PARTS = "user_parts";
+
+    private static final Set<String> REASONING_TYPES =
+            Set.of("thinking", "reasoningContent", "reasoning_content", "reasoning");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** Parts of stored content; content that is not well-formed structured JSON is one text part. */
+    static List<MessagePart> parse(String content) {
+        if (content == null) return List.of();
+        var trimmed = content.trim();
+        var field = trimmed.startsWith("{\"" + PARTS + "\":") ? PARTS
+                : trimmed.startsWith("{\"" + USER_PARTS + "\":") ? USER_PARTS : null;
+        if (field != null) {
+            try {
+                var parts = OBJECT_MAPPER.readTree(content).get(field);
+                if (parts != null && parts.isArray()) return fromTree(field, parts);
+            } catch (JsonProcessingException e) {
+                // keep raw content
+            }
+        }
+        return List.of(new MessagePart.Text(content));
+    }
+
+    /** Parts of the array stored under {@code field}, either {@link #PARTS} or {@link #USER_PARTS}. */
+    private static List<MessagePart> fromTree(String field, JsonNode parts) {
+        var result = new ArrayList<MessagePart>();
+        for (var part : parts) {
+            var type = part.path("type").asText();
+            var content = part.get("content");
+            if (USER_PARTS.equals(field)) {
+                if ("text".equals(type) && content != null && !content.isNull()) {
+                    result.add(new MessagePart.Text(content.asText()));
+                } else if ("file".equals(type)) {
+                    result.add(new MessagePart.File(new FileAttachment(part.path("id").asText(), part.path("name").asText(),
+                            part.path("mimeType").asText())));
+                }
+            } else if (content != null && !content.isNull()) {
+                var text = content.isTextual() ? content.asText() : content.toString();
+                if ("answer".equals(type)) {
+                    result.add(new MessagePart.Text(text));
+                } else if (REASONING_TYPES.contains(type)) {
+                    result.add(new MessagePart.Reasoning(text));
+                } else {
+                    result.add(new MessagePart.Tool(text));
+                }
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private MessageParts() {
+    }
+}
@@ -0,0 +1,289 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.search.Bm25;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over message text, ranked with {@link Bm25}. Each message is a document identified by its
+ * conversation and position; postings are append-only, so indexing a message never touches older entries.
+ * Deleted conversations are tombstoned and dropped from the postings once they make up half the documents.
+ * Updates for one conversation must be serialized by the caller.
+ */
+class MessageSearchIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final List<String> docConversations = new ArrayList<>();
+    private final IntList docMessages = new IntList();
+    private final IntList docLengths = new IntList();
+    private final Map<String, Integer> indexedCounts = new HashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private int deletedDocs;
+    private long totalLength;
+
+    record Hit(String conversationId, int messageIndex, double score) {
+    }
+
+    /** Persisted form. Postings interleave document number and term frequency. */
+    record Snapshot(List<String> docConversations, int[] docMessages, int[] docLengths,
+                    Map<String, int[]> postings, Map<String, Integer> indexedCounts) {
+    }
+
+    int indexedCount(String conversationId) {
+        lock.readLock().lock();
+        try {
+            return indexedCounts.getOrDefault(conversationId, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Set<String> conversationIds() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(indexedCounts.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes messages starting at position {@code firstIndex}. Ignored unless it continues exactly where
+     * the conversation's indexed range ends, so a gap is left for the startup catch-up to fill.
+     */
+    boolean add(String conversationId, int firstIndex, List<ChatMessage> messages) {
+        if (messages.isEmpty()) return true;
+        var documents = new ArrayList<Map<String, Integer>>(messages.size());
+        for (var message : messages) {
+            documents.add(Bm25.termFrequencies(Bm25.tokenize(message.plainText())));
+        }
+        lock.writeLock().lock();
+        try {
+            if (indexedCounts.getOrDefault(conversationId, 0) != firstIndex) return false;
+            for (int i = 0; i < documents.size(); i++) {
+                var terms = documents.get(i);
+                if (terms.isEmpty()) continue;
+                int doc = docConversations.size();
+                int length = 0;
+                for (var term : terms.entrySet()) {
+                    postings.computeIfAbsent(term.getKey(), t -> new IntList()).add(doc, term.getValue());
+                    length += term.getValue();
+                }
+                docConversations.add(conversationId);
+                docMessages.add(firstIndex + i);
+                docLengths.add(length);
+                totalLength += length;
+            }
+            indexedCounts.put(conversationId, firstIndex + messages.size());
+            dirty.set(true);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String conversationId) {
+        lock.writeLock().lock();
+        try {
+            if (indexedCounts.remove(conversationId) == null) return;
+            for (int doc = 0; doc < docConversations.size(); doc++) {
+                if (!conversationId.equals(docConversations.get(doc))) continue;
+                docConversations.set(doc, null);
+                totalLength -= docLengths.get(doc);
+                deletedDocs++;
+            }
+            if (deletedDocs * 2 > docConversations.size()) compact();
+            dirty.set(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Top {@code limit} messages of visible conversations matching any query term, best first. */
+    List<Hit> search(String query, Predicate<String> visible, int limit) {
+        var terms = new LinkedHashSet<>(Bm25.tokenize(query));
+        if (terms.isEmpty() || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            int liveDocs = docConversations.size() - deletedDocs;
+            if (liveDocs == 0) return List.of();
+            double averageLength = (double) totalLength / liveDocs;
+            var scores = new HashMap<Integer, Double>();
+            var visibility = new HashMap<String, Boolean>();
+            for (var term : terms) {
+                var list = postings.get(term);
+                if (list == null) continue;
+                int documentFrequency = list.size() / 2;
+                double idf = Bm25.idf(liveDocs, documentFrequency);
+                for (int i = 0; i < list.size(); i += 2) {
+                    int doc = list.get(i);
+                    var conversationId = docConversations.get(doc);
+                    if (conversationId == null || !visibility.computeIfAbsent(conversationId, visible::test)) continue;
+                    scores.merge(doc, Bm25.termScore(idf, list.get(i + 1), docLengths.get(doc), averageLength),
+                            Double::sum);
+                }
+            }
+            var top = new PriorityQueue<Map.Entry<Integer, Double>>(Map.Entry.comparingByValue());
+            for (var entry : scores.entrySet()) {
+                top.add(entry);
+                if (top.size() > limit) top.poll();
+            }
+            var hits = new ArrayList<Hit>(top.size());
+            while (!top.isEmpty()) {
+                var entry = top.poll();
+                int doc = entry.getKey();
+                hits.add(new Hit(docConversations.get(doc), docMessages.get(doc), entry.getValue()));
+            }
+            return hits.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Clears the dirty flag; callers set it again via {@link #markDirty()} if persisting fails. */
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    void markDirty() {
+        dirty.set(true);
+    }
+
+    Snapshot snapshot() {
+        lock.writeLock().lock();
+        try {
+            if (deletedDocs > 0) compact();
+            var persisted = new HashMap<String, int[]>(postings.size());
+            postings.forEach((term, list) -> persisted.put(term, list.toArray()));
+            return new Snapshot(List.copyOf(docConversations), docMessages.toArray(), docLengths.toArray(),
+                    persisted, Map.copyOf(indexedCounts));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void restore(Snapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            docConversations.addAll(snapshot.docConversations());
+            for (int i = 0; i < snapshot.docMessages().length; i++) {
+                docMessages.add(snapshot.docMessages()[i]);
+                docLengths.add(snapshot.docLengths()[i]);
+                totalLength += snapshot.docLengths()[i];
+            }
+            snapshot.postings().forEach((term, values) -> postings.put(term, IntList.of(values)));
+            indexedCounts.putAll(snapshot.indexedCounts());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docConversations.clear();
+            docMessages.clear();
+            docLengths.clear();
+            indexedCounts.clear();
+            deletedDocs = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Renumbers live documents and rewrites every posting list without tombstoned ones. Caller holds the write lock. */
+    private void compact() {
+        var renumbered = new int[docConversations.size()];
+        var conversations = new ArrayList<String>(docConversations.size() - deletedDocs);
+        var messages = new IntList();
+        var lengths = new IntList();
+        for (int doc = 0; doc < docConversations.size(); doc++) {
+            var conversationId = docConversations.get(doc);
+            if (conversationId == null) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = conversations.size();
+            conversations.add(conversationId);
+            messages.add(docMessages.get(doc));
+            lengths.add(docLengths.get(doc));
+        }
+        var it = postings.entrySet().iterator();
+        while (it.hasNext()) {
+            var entry = it.next();
+            var kept = new IntList();
+            var list = entry.getValue();
+            for (int i = 0; i < list.size(); i += 2) {
+                int doc = renumbered[list.get(i)];
+                if (doc >= 0) kept.add(doc, list.get(i + 1));
+            }
+            if (kept.size() == 0) it.remove();
+            else entry.setValue(kept);
+        }
+        docConversations.clear();
+        docConversations.addAll(conversations);
+        docMessages.clear();
+        docMessages.addAll(messages);
+        docLengths.clear();
+        docLengths.addAll(lengths);
+        deletedDocs = 0;
+    }
+
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        static IntList of(int[] values) {
+            var list = new IntList();
+            list.values = values.length > 0 ? values : new int[4];
+            list.size = values.length;
+            return list;
+        }
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void add(int first, int second) {
+            add(first);
+            add(second);
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) add(other.values[i]);
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs the tool calls of one assistant turn concurrently on virtual threads when
+ * {@code aidaemon.tools.parallel-calls} is on. Calls to one MCP server run at most {@code parallel-per-server}
+ * at a time across all conversations, as held by {@link ServerCallPermits}. Tools get the request's tool
+ * context as with the default manager. Built-in tools may touch the same files, memory or conversations, so
+ * they run one after another in the order they were called, alongside the MCP calls. Tool responses, tool-log
+ * entries and tool chunks keep the order the model made the calls in. Single calls, and all calls when the
+ * mode is off, go through Spring AI's default manager.
+ */
+@Component
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ToolCallingManager sequential = ToolCallingManager.builder().build();
+    private final ToolExecutionExceptionProcessor exceptionProcessor = DefaultToolExecutionExceptionProcessor.builder().build();
+    private final ServerCallPermits permits;
+
+    public ParallelToolCallingManager(boolean enabled, int maxPerServer) {
+        this(new ServerCallPermits(enabled, maxPerServer));
+    }
+
+    @Autowired
+    public ParallelToolCallingManager(ServerCallPermits permits) {
+        this.permits = permits;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return sequential.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        var assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(output -> output != null && output.hasToolCalls())
+                .findFirst()
+                .orElse(null);
+        if (!permits.enabled() || assistantMessage == null || assistantMessage.getToolCalls().size() < 2) {
+            return sequential.executeToolCalls(prompt, chatResponse);
+        }
+        var callbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks() : List.<ToolCallback>of();
+        var calls = assistantMessage.getToolCalls();
+        var resolved = calls.stream()
+                .map(call -> callbacks.stream()
+                        .filter(c -> c.getToolDefinition().name().equals(call.name()))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalStateException("No ToolCallback found for tool name: " + call.name())))
+                .toList();
+        var toolContext = toolContext(prompt, assistantMessage);
+        var order = new ToolCallOrder(calls.size());
+        var results = new ArrayList<CompletableFuture<String>>();
+        CompletableFuture<String> builtIns = CompletableFuture.completedFuture(null);
+        boolean returnDirect = true;
+        for (int i = 0; i < calls.size(); i++) {
+            var call = calls.get(i);
+            var callback = resolved.get(i);
+            returnDirect &= callback.getToolMetadata().returnDirect();
+            var input = StringUtils.hasText(call.arguments()) ? call.arguments() : "{}";
+            int index = i;
+            var serverName = callback instanceof LoggingToolCallback logging ? logging.serverName() : null;
+            Supplier<String> run = () -> order.run(index,
+                    () -> permits.run(serverName, () -> execute(callback, input, toolContext)));
+            CompletableFuture<String> result;
+            if (serverName == null || serverName.isBlank()) {
+                result = builtIns.handleAsync((previous, error) -> run.get(), EXECUTOR);
+                builtIns = result;
+            } else {
+                result = CompletableFuture.supplyAsync(run, EXECUTOR);
+            }
+            results.add(result);
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).handle((done, error) -> null).join();
+
+        var responses = new ArrayList<ToolResponseMessage.ToolResponse>();
+        for (int i = 0; i < calls.size(); i++) {
+            var call = calls.get(i);
+            responses.add(new ToolResponseMessage.ToolResponse(Objects.requireNonNullElse(call.id(), ""), call.name(),
+                    join(results.get(i))));
+        }
+        return ToolExecutionResult.builder()
+                .conversationHistory(history(prompt, assistantMessage, responses))
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private String execute(ToolCallback callback, String input, ToolContext toolContext) {
+        try {
+            return callback.call(input, toolContext);
+        } catch (ToolExecutionException e) {
+            return exceptionProcessor.process(e);
+        }
+    }
+
+    /** The options' tool context with the history up to this turn, built as the default manager does. */
+    private static ToolContext toolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || CollectionUtils.isEmpty(options.getToolContext())) {
+            return new ToolContext(Map.of());
+        }
+        var context = new HashMap<>(options.getToolContext());
+        var history = new ArrayList<Message>(prompt.copy().getInstructions());
+        history.add(AssistantMessage.builder()
+                .content(Objects.requireNonNullElse(assistantMessage.getText(), ""))
+                .properties(assistantMessage.getMetadata())
+                .toolCalls(assistantMessage.getToolCalls())
+                .build());
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return new ToolContext(context);
+    }
+
+    private static List<Message> history(Prompt prompt, AssistantMessage assistantMessage,
+                                         List<ToolResponseMessage.ToolResponse> responses) {
+        var history = new ArrayList<Message>(prompt.getInstructions());
+        history.add(assistantMessage);
+        history.add(ToolResponseMessage.builder().responses(responses).build());
+        return history;
+    }
+
+    private static String join(CompletableFuture<String> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from participant to conversation ids. Conversations without participants are visible
+ * to everyone and tracked separately. Updates for one conversation must be serialized by the caller.
+ */
+class ParticipantIndex {
+
+    private final Map<String, Set<String>> byParticipant = new ConcurrentHashMap<>();
+    private final Set<String> unrestricted = ConcurrentHashMap.newKeySet();
+
+    void update(String conversationId, List<String> previous, List<String> current) {
+        if (previous != null && Objects.equals(previous, current)) return;
+        remove(conversationId, previous);
+        if (current == null || current.isEmpty()) {
+            unrestricted.add(conversationId);
+            return;
+        }
+        for (var participant : current) {
+            byParticipant.computeIfAbsent(participant, p -> ConcurrentHashMap.newKeySet()).add(conversationId);
+        }
+    }
+
+    void remove(String conversationId, List<String> participants) {
+        unrestricted.remove(conversationId);
+        if (participants == null) return;
+        for (var participant : participants) {
+            byParticipant.computeIfPresent(participant, (p, ids) -> {
+                ids.remove(conversationId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    Set<String> conversationIdsFor(String participant) {
+        var ids = new HashSet<>(unrestricted);
+        var own = byParticipant.get(participant);
+        if (own != null) ids.addAll(own);
+        return ids;
+    }
+
+    void clear() {
+        byParticipant.clear();
+        unrestricted.clear();
+    }
+}
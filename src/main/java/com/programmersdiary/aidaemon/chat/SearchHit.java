@@ -0,0 +1,11 @@
+package com.programmersdiary.aidaemon.chat;
+
+/** Message matching a full-text search; {@code snippet} is display text around the first matching term. */
+public record SearchHit(String conversationId,
+                        String conversationName,
+                        int messageIndex,
+                        String participant,
+                        long timestampMillis,
+                        String snippet,
+                        double score) {
+}
@@ -0,0 +1,427 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.storage.DurableFiles;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only message log of a single conversation. Each message is stored as a
+ * {@code [length][crc32][payload]} record, encoded by a {@link MessageCodec}, in numbered segment files; a segment is sealed once it
+ * exceeds {@code segmentMaxBytes} and sealed segments are merged by {@link #compact()}.
+ * Outside {@link DurabilityMode#SYNC} appends are buffered and written with a single fsync once the
+ * write window elapses. An idle log can be {@link #archive() archived} into one gzip file; it is restored
+ * to a segment the next time the log is opened.
+ */
+class SegmentedMessageLog {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String ARCHIVE_FILE = "archive.gz";
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path dir;
+    private final MessageCodec codec;
+    private final long segmentMaxBytes;
+    private final DurabilityMode durabilityMode;
+    private final ScheduledExecutorService flusher;
+    private final long writeWindowMillis;
+    private final List<Path> segments = new ArrayList<>();
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    private CompletableFuture<Void> pendingFlush;
+    private boolean opened;
+    private boolean discarded;
+    private int size;
+
+    SegmentedMessageLog(Path dir, MessageCodec codec, long segmentMaxBytes) {
+        this(dir, codec, segmentMaxBytes, DurabilityMode.SYNC, null, 0);
+    }
+
+    SegmentedMessageLog(Path dir, MessageCodec codec, long segmentMaxBytes,
+                        DurabilityMode durabilityMode, ScheduledExecutorService flusher, long writeWindowMillis) {
+        this.dir = dir;
+        this.codec = codec;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.durabilityMode = flusher != null ? durabilityMode : DurabilityMode.SYNC;
+        this.flusher = flusher;
+        this.writeWindowMillis = writeWindowMillis;
+    }
+
+    synchronized List<ChatMessage> readAll() {
+        flush();
+        var messages = new ArrayList<ChatMessage>();
+        scan(messages);
+        return messages;
+    }
+
+    synchronized int size() {
+        ensureOpen();
+        return size;
+    }
+
+    synchronized int sealedSegmentCount() {
+        ensureOpen();
+        return Math.max(0, segments.size() - 1);
+    }
+
+    private void ensureOpen() {
+        if (!opened) scan(null);
+    }
+
+    boolean isArchived() {
+        return Files.exists(dir.resolve(ARCHIVE_FILE));
+    }
+
+    /**
+     * Compresses every record into {@code archive.gz} and deletes the segments. The archive is durable before
+     * any segment is removed, so once it is in place it holds the whole log and wins over leftover segments of
+     * an interrupted delete.
+     * Returns false when there is nothing on disk to archive.
+     */
+    synchronized boolean archive() {
+        ensureOpen();
+        flush();
+        if (segments.isEmpty()) return false;
+        var archive = dir.resolve(ARCHIVE_FILE);
+        var tmp = dir.resolve(ARCHIVE_FILE + TEMP_SUFFIX);
+        try {
+            try (var out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                for (var segment : segments) {
+                    // The active segment opened after a seal is only created by its first write.
+                    if (Files.exists(segment)) Files.copy(segment, out);
+                }
+            }
+            force(tmp);
+            Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            DurableFiles.syncDirectory(dir);
+            for (var segment : segments) {
+                Files.deleteIfExists(segment);
+            }
+            segments.clear();
+            opened = false;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Restores an archived log to segments. Also happens on the first read or append after archiving. */
+    synchronized void rehydrate() {
+        scan(null);
+    }
+
+    private void restoreArchive() throws IOException {
+        var archive = dir.resolve(ARCHIVE_FILE);
+        if (!Files.exists(archive)) return;
+        try (var stream = Files.list(dir)) {
+            for (var file : stream.toList()) {
+                if (file.getFileName().toString().endsWith(SEGMENT_SUFFIX)) Files.delete(file);
+            }
+        }
+        var target = segmentPath(0);
+        var tmp = dir.resolve(target.getFileName() + TEMP_SUFFIX);
+        try (var in = new GZIPInputStream(Files.newInputStream(archive))) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        force(tmp);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        DurableFiles.syncDirectory(dir);
+        Files.delete(archive);
+    }
+
+    private static void force(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Validates every segment, truncating a torn tail and removing temp files of an interrupted rewrite,
+     * compaction or archive. An archive is restored first. Messages are decoded only when {@code sink} is given.
+     */
+    private void scan(List<ChatMessage> sink) {
+        segments.clear();
+        int count = 0;
+        try {
+            if (Files.isDirectory(dir)) {
+                restoreArchive();
+                List<Path> files;
+                try (var stream = Files.list(dir)) {
+                    files = stream.sorted().toList();
+                }
+                for (var file : files) {
+                    var name = file.getFileName().toString();
+                    if (name.endsWith(SEGMENT_SUFFIX)) segments.add(file);
+                    else if (name.endsWith(TEMP_SUFFIX)) Files.deleteIfExists(file);
+                }
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                var segment = segments.get(i);
+                if (firstMessageIndex(segment) < count) {
+                    // Already merged into an earlier segment by a compaction that stopped before cleanup.
+                    Files.deleteIfExists(segments.remove(i--));
+                    continue;
+                }
+                var result = readSegment(segment, sink);
+                count += result.records();
+                if (result.validBytes() < Files.size(segment)) {
+                    truncate(segment, result.validBytes());
+                    dropSegmentsAfter(i);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        size = count;
+        opened = true;
+    }
+
+    /** Returns a future that completes once the message is on disk. */
+    synchronized CompletableFuture<Void> append(ChatMessage message) {
+        ensureWritable();
+        ensureOpen();
+        ByteBuffer record;
+        try {
+            record = encode(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (durabilityMode == DurabilityMode.SYNC) {
+            writeRecords(List.of(record), size + 1);
+            size++;
+            return CompletableFuture.completedFuture(null);
+        }
+        pending.add(record);
+        size++;
+        if (pendingFlush != null) return pendingFlush;
+        var batch = new CompletableFuture<Void>();
+        pendingFlush = batch;
+        try {
+            flusher.schedule(this::flushQuietly, writeWindowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The flusher is shut down: write now rather than leave a batch nobody will flush.
+            flush();
+        }
+        return batch;
+    }
+
+    synchronized void flush() {
+        var batch = pendingFlush;
+        pendingFlush = null;
+        try {
+            if (!pending.isEmpty()) {
+                writeRecords(pending, size);
+                pending.clear();
+            }
+            if (batch != null) batch.complete(null);
+        } catch (UncheckedIOException e) {
+            if (batch != null) batch.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops records not written yet and completes their batch, for a conversation that is being deleted.
+     * Later appends and rewrites are rejected, so a flush scheduled before the delete cannot recreate the
+     * directory.
+     */
+    synchronized void discard() {
+        discarded = true;
+        pending.clear();
+        var batch = pendingFlush;
+        pendingFlush = null;
+        if (batch != null) batch.complete(null);
+    }
+
+    private void ensureWritable() {
+        if (discarded) throw new IllegalStateException("Message log was discarded: " + dir);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            // Surfaced to waiting writers through the batch future; the records stay pending.
+        }
+    }
+
+    private void writeRecords(List<ByteBuffer> records, int messagesOnDiskAfterWrite) {
+        try {
+            var active = activeSegment();
+            var created = !Files.exists(active);
+            try (var channel = FileChannel.open(active, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                var buffers = records.toArray(ByteBuffer[]::new);
+                long remaining = 0;
+                for (var buffer : buffers) remaining += buffer.remaining();
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+            }
+            if (created) DurableFiles.syncDirectory(dir);
+            if (Files.size(active) >= segmentMaxBytes) {
+                segments.add(segmentPath(messagesOnDiskAfterWrite));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void rewrite(List<ChatMessage> messages) {
+        ensureWritable();
+        ensureOpen();
+        flush();
+        try {
+            Files.createDirectories(dir);
+            var target = segmentPath(0);
+            var tmp = dir.resolve(target.getFileName() + TEMP_SUFFIX);
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (var message : messages) {
+                    writeFully(channel, encode(message));
+                }
+                channel.force(false);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            DurableFiles.syncDirectory(dir);
+            for (var segment : segments) {
+                if (!segment.equals(target)) Files.deleteIfExists(segment);
+            }
+            segments.clear();
+            segments.add(target);
+            size = messages.size();
+            opened = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Merges all sealed segments into the first one. The active segment is left untouched. */
+    synchronized void compact() {
+        if (sealedSegmentCount() < 2) return;
+        var sealed = List.copyOf(segments.subList(0, segments.size() - 1));
+        var target = sealed.get(0);
+        var tmp = dir.resolve(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (var out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (var segment : sealed) {
+                    try (var in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                        in.transferTo(0, in.size(), out);
+                    }
+                }
+                out.force(false);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            DurableFiles.syncDirectory(dir);
+            for (var segment : sealed.subList(1, sealed.size())) {
+                Files.deleteIfExists(segment);
+            }
+            segments.removeAll(sealed.subList(1, sealed.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path activeSegment() throws IOException {
+        if (segments.isEmpty()) {
+            Files.createDirectories(dir);
+            segments.add(segmentPath(size));
+        }
+        return segments.get(segments.size() - 1);
+    }
+
+    private Path segmentPath(int firstMessageIndex) {
+        return dir.resolve("%020d%s".formatted(firstMessageIndex, SEGMENT_SUFFIX));
+    }
+
+    private static long firstMessageIndex(Path segment) {
+        var name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private SegmentReadResult readSegment(Path segment, List<ChatMessage> sink) throws IOException {
+        long valid = 0;
+        int records = 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int length;
+                long checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = Integer.toUnsignedLong(in.readInt());
+                    if (length < 0) break;
+                    payload = in.readNBytes(length);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (payload.length < length || crc(payload) != checksum) break;
+                if (sink != null) sink.add(codec.decode(payload));
+                valid += RECORD_HEADER_BYTES + length;
+                records++;
+            }
+        }
+        return new SegmentReadResult(valid, records);
+    }
+
+    private record SegmentReadResult(long validBytes, int records) {
+    }
+
+    private void truncate(Path segment, long validBytes) throws IOException {
+        try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(validBytes);
+        }
+    }
+
+    private void dropSegmentsAfter(int index) throws IOException {
+        while (segments.size() > index + 1) {
+            Files.deleteIfExists(segments.remove(segments.size() - 1));
+        }
+    }
+
+    private ByteBuffer encode(ChatMessage message) throws IOException {
+        var payload = codec.encode(message);
+        var buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc(payload));
+        buffer.put(payload);
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long crc(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
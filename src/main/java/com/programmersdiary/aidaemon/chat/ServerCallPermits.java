@@ -0,0 +1,50 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Limits calls to one MCP server to {@code parallel-per-server} at a time across all conversations while
+ * {@code aidaemon.tools.parallel-calls} is on. Shared by {@link ParallelToolCallingManager} and
+ * {@link ToolDiscoveryTool}, so a tool reached through discovery counts against the same limit.
+ */
+@Component
+public class ServerCallPermits {
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxPerServer;
+
+    public ServerCallPermits(@Value("${aidaemon.tools.parallel-calls:false}") boolean enabled,
+                             @Value("${aidaemon.tools.parallel-per-server:4}") int maxPerServer) {
+        this.enabled = enabled;
+        this.maxPerServer = Math.max(1, maxPerServer);
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    /** Runs the call holding one of the server's permits. Built-in tools, without a server, run at once. */
+    <T> T run(String serverName, Supplier<T> call) {
+        if (!enabled || serverName == null || serverName.isBlank()) return call.get();
+        var semaphore = permits.computeIfAbsent(serverName, name -> new Semaphore(maxPerServer));
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        try {
+            return call.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.programmersdiary.aidaemon.files.FileAttachment;
+
+import java.util.List;
+
+/**
+ * On-disk shape of a {@link ChatMessage}. Content is stored as the original string; in Smile records a
+ * string needs no escaping, so structured {@code {"parts":[...]}} content costs no more than a native tree
+ * and is neither parsed nor re-serialized on write.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+record StoredMessage(String participant,
+                     String content,
+                     long timestampMillis,
+                     @JsonInclude(JsonInclude.Include.NON_EMPTY) List<FileAttachment> files) {
+
+    static StoredMessage from(ChatMessage message) {
+        return new StoredMessage(message.participant(), message.content(), message.timestampMillis(),
+                message.files());
+    }
+
+    ChatMessage toChatMessage() {
+        return new ChatMessage(participant, content, timestampMillis, files);
+    }
+}
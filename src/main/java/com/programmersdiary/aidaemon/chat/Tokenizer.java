@@ -0,0 +1,14 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.regex.Pattern;
+
+/** Counts the tokens a model would see for a piece of text. Implementations must be thread-safe. */
+public interface Tokenizer {
+
+    /** GPT-style pre-tokenization (cl100k): tokens never span two pieces. */
+    Pattern PIECES = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+                    + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    int countTokens(String text);
+}
@@ -0,0 +1,83 @@
+package com.programmersdiary.aidaemon.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the tool-log entries of tool calls run in parallel in the order the model made the calls, so the
+ * tool log and the streamed tool chunks read as they do when calls run one by one. An entry is released once
+ * every earlier call has finished. A call runs on its own thread, where {@link LoggingToolCallback} finds
+ * its {@link Slot}, also when one tool calls another; work a call hands to another thread, such as a tool
+ * run under a timeout, takes the slot along with {@link Slot#bind}.
+ */
+final class ToolCallOrder {
+
+    private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<>();
+
+    private final List<List<Runnable>> entries = new ArrayList<>();
+    private final boolean[] finished;
+    private int next;
+
+    /** A call's place in the order. */
+    record Slot(ToolCallOrder order, int index) {
+
+        void record(Runnable entry) {
+            order.record(index, entry);
+        }
+
+        /** Runs work on the current thread as part of this call, without finishing the call. */
+        <T> T bind(Supplier<T> work) {
+            var previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return work.get();
+            } finally {
+                if (previous != null) CURRENT.set(previous);
+                else CURRENT.remove();
+            }
+        }
+    }
+
+    ToolCallOrder(int calls) {
+        for (int i = 0; i < calls; i++) {
+            entries.add(new ArrayList<>());
+        }
+        this.finished = new boolean[calls];
+    }
+
+    /** Runs the call with the given index on the current thread and finishes it. */
+    <T> T run(int index, Supplier<T> call) {
+        CURRENT.set(new Slot(this, index));
+        try {
+            return call.get();
+        } finally {
+            CURRENT.remove();
+            finish(index);
+        }
+    }
+
+    /** The slot of the call running on this thread, or null outside parallel tool execution. */
+    static Slot current() {
+        return CURRENT.get();
+    }
+
+    /** Entries of a call already released, such as the late log of a timed-out call, are run at once. */
+    synchronized void record(int index, Runnable entry) {
+        if (index < next) {
+            entry.run();
+            return;
+        }
+        entries.get(index).add(entry);
+    }
+
+    /** Marks the call finished and releases the entries of every call up to the first one still running. */
+    synchronized void finish(int index) {
+        finished[index] = true;
+        while (next < finished.length && finished[next]) {
+            entries.get(next).forEach(Runnable::run);
+            entries.set(next, List.of());
+            next++;
+        }
+    }
+}
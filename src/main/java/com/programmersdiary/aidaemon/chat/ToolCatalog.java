@@ -0,0 +1,82 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The tools offered to the model in one request. Names are unique: a tool whose name is already taken is
+ * left out, so the first one added wins. The definitions are sent with every provider call, so their size
+ * is tracked and can be capped by number of tools and by schema characters (name, description and input
+ * schema); tools that would exceed a cap are left out, which keeps the earlier-added built-in tools and
+ * drops MCP tools first. A cap of 0 means no limit.
+ */
+final class ToolCatalog {
+
+    private final int maxTools;
+    private final int maxSchemaChars;
+    private final List<ToolCallback> tools = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final List<String> omitted = new ArrayList<>();
+    private int schemaChars;
+
+    ToolCatalog(int maxTools, int maxSchemaChars) {
+        this.maxTools = maxTools;
+        this.maxSchemaChars = maxSchemaChars;
+    }
+
+    /** Adds the tool unless its name is taken or it would exceed a cap; returns whether it was added. */
+    boolean add(ToolCallback tool) {
+        return add(tool, false);
+    }
+
+    /**
+     * Adds the tool whatever the caps, for the few tools through which the model reaches those left out.
+     * Its definition still counts towards the caps for the tools added after it.
+     */
+    boolean reserve(ToolCallback tool) {
+        return add(tool, true);
+    }
+
+    private boolean add(ToolCallback tool, boolean reserved) {
+        var definition = tool.getToolDefinition();
+        if (names.contains(definition.name())) {
+            omitted.add(definition.name());
+            return false;
+        }
+        int chars = schemaChars(tool);
+        if (!reserved && ((maxTools > 0 && tools.size() >= maxTools)
+                || (maxSchemaChars > 0 && schemaChars + chars > maxSchemaChars))) {
+            omitted.add(definition.name());
+            return false;
+        }
+        names.add(definition.name());
+        tools.add(tool);
+        schemaChars += chars;
+        return true;
+    }
+
+    List<ToolCallback> tools() {
+        return tools;
+    }
+
+    /** Characters of the definitions of the tools added so far. */
+    int schemaChars() {
+        return schemaChars;
+    }
+
+    /** Names of tools left out as duplicates or over a cap, in the order they were offered. */
+    List<String> omitted() {
+        return omitted;
+    }
+
+    static int schemaChars(ToolCallback tool) {
+        var definition = tool.getToolDefinition();
+        return definition.name().length()
+                + (definition.description() != null ? definition.description().length() : 0)
+                + (definition.inputSchema() != null ? definition.inputSchema().length() : 0);
+    }
+}
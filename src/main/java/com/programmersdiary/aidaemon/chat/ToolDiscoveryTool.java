@@ -0,0 +1,50 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.util.Map;
+
+/** Finds and calls the tools {@link ToolRouter} left out of a request. */
+class ToolDiscoveryTool {
+
+    static final int MAX_RESULTS = 8;
+
+    private final ToolRouter.Index index;
+    private final Map<String, ToolCallback> leftOut;
+    private final ServerCallPermits permits;
+
+    ToolDiscoveryTool(ToolRouter.Index index, Map<String, ToolCallback> leftOut, ServerCallPermits permits) {
+        this.index = index;
+        this.leftOut = leftOut;
+        this.permits = permits;
+    }
+
+    @Tool(description = "Find more tools by keywords. Only some tools are offered directly; this searches the "
+            + "others by name and description and returns each match's name, description and input schema. "
+            + "Call a tool found here with callDiscoveredTool.")
+    public String discoverTools(@ToolParam(description = "Keywords describing what the tool should do") String query) {
+        var sb = new StringBuilder();
+        index.search(query, leftOut.size()).stream()
+                .map(leftOut::get)
+                .filter(tool -> tool != null)
+                .limit(MAX_RESULTS)
+                .forEach(tool -> {
+                    var definition = tool.getToolDefinition();
+                    sb.append(definition.name()).append(": ").append(definition.description())
+                            .append("\nInput schema: ").append(definition.inputSchema()).append("\n\n");
+                });
+        return sb.isEmpty() ? "No tools match \"" + query + "\". Try other keywords." : sb.toString().strip();
+    }
+
+    @Tool(description = "Call a tool found with discoverTools")
+    public String callDiscoveredTool(
+            @ToolParam(description = "Tool name as returned by discoverTools") String name,
+            @ToolParam(description = "Tool input as a JSON object matching the tool's input schema") String input) {
+        var tool = leftOut.get(name);
+        if (tool == null) return "Unknown tool: " + name + ". Use discoverTools to find tools.";
+        var serverName = tool instanceof LoggingToolCallback logging ? logging.serverName() : null;
+        return permits.run(serverName, () -> tool.call(input != null && !input.isBlank() ? input : "{}"));
+    }
+}
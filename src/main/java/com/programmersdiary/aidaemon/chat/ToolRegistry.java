@@ -0,0 +1,57 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.method.MethodToolCallback;
+import org.springframework.ai.tool.support.ToolDefinitions;
+import org.springframework.ai.tool.support.ToolUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Definitions of the {@code @Tool} methods of a class, read once per class. Binding them to an instance
+ * carrying per-request context (conversation, bot, provider) only creates the callbacks, without reflecting
+ * on the class or generating its input schemas again as {@code ToolCallbacks.from} does.
+ */
+final class ToolRegistry {
+
+    private static final Map<Class<?>, List<ToolMethod>> METHODS = new ConcurrentHashMap<>();
+
+    private record ToolMethod(Method method, ToolDefinition definition, ToolMetadata metadata,
+                              ToolCallResultConverter converter) {
+    }
+
+    private ToolRegistry() {
+    }
+
+    static List<ToolCallback> bind(Object tools) {
+        var type = AopUtils.isAopProxy(tools) ? AopUtils.getTargetClass(tools) : tools.getClass();
+        return METHODS.computeIfAbsent(type, ToolRegistry::toolMethods).stream()
+                .<ToolCallback>map(m -> MethodToolCallback.builder()
+                        .toolDefinition(m.definition())
+                        .toolMetadata(m.metadata())
+                        .toolMethod(m.method())
+                        .toolObject(tools)
+                        .toolCallResultConverter(m.converter())
+                        .build())
+                .toList();
+    }
+
+    private static List<ToolMethod> toolMethods(Class<?> type) {
+        return Arrays.stream(ReflectionUtils.getDeclaredMethods(type))
+                .filter(method -> method.isAnnotationPresent(Tool.class))
+                .filter(ReflectionUtils.USER_DECLARED_METHODS::matches)
+                .map(method -> new ToolMethod(method, ToolDefinitions.from(method), ToolMetadata.from(method),
+                        ToolUtils.getToolCallResultConverter(method)))
+                .toList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.search.Bm25;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Narrows MCP tools to those relevant to the turn. Once there are more than {@code routing-top-k} of them,
+ * only the top-k by {@link Bm25} over tool names and descriptions, scored against the latest messages, are
+ * sent, together with {@link ToolDiscoveryTool} to find and call the rest. The index is rebuilt only when the
+ * set of tools changes.
+ */
+@Component
+public class ToolRouter {
+
+    static final int QUERY_MESSAGES = 3;
+
+    private final int topK;
+    private final ServerCallPermits permits;
+    private volatile Index index;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder routedRequests = new LongAdder();
+    private final LongAdder toolsOffered = new LongAdder();
+    private final LongAdder toolsLeftOut = new LongAdder();
+    private final LongAdder schemaTokensSaved = new LongAdder();
+
+    /**
+     * The tools to send for a turn: the relevant ones and, when some were left out, the discovery tools that
+     * reach the rest. The discovery tools are returned unwrapped, for the caller to log and reserve a place for.
+     */
+    record Routing(List<ToolCallback> tools, List<ToolCallback> discovery) {
+    }
+
+    /** Tool names with a BM25 index over their names, which count twice, and descriptions. */
+    record Index(Map<String, String> descriptions, List<String> names, Bm25 bm25) {
+
+        static Index of(Map<String, String> descriptions) {
+            var names = List.copyOf(descriptions.keySet());
+            var documents = new ArrayList<List<String>>(names.size());
+            for (var name : names) {
+                var terms = Bm25.tokenize(name);
+                terms.addAll(Bm25.tokenize(name));
+                terms.addAll(Bm25.tokenize(descriptions.get(name)));
+                documents.add(terms);
+            }
+            return new Index(Map.copyOf(descriptions), names, Bm25.of(documents));
+        }
+
+        /** Names of the tools matching any query term, best first. */
+        List<String> search(String query, int limit) {
+            return bm25.search(query, limit).stream().map(names::get).toList();
+        }
+    }
+
+    public ToolRouter(int topK) {
+        this(topK, new ServerCallPermits(false, 1));
+    }
+
+    @Autowired
+    public ToolRouter(@Value("${aidaemon.tools.routing-top-k:0}") int topK, ServerCallPermits permits) {
+        this.topK = topK;
+        this.permits = permits;
+    }
+
+    Routing route(List<ToolCallback> tools, List<ChatMessage> messages) {
+        requests.increment();
+        if (topK <= 0 || tools.size() <= topK) {
+            toolsOffered.add(tools.size());
+            return new Routing(tools, List.of());
+        }
+        var byName = new LinkedHashMap<String, ToolCallback>();
+        var descriptions = new LinkedHashMap<String, String>();
+        for (var tool : tools) {
+            var definition = tool.getToolDefinition();
+            if (byName.putIfAbsent(definition.name(), tool) == null) {
+                descriptions.put(definition.name(), Objects.requireNonNullElse(definition.description(), ""));
+            }
+        }
+        var index = indexOf(descriptions);
+        var selected = new HashSet<>(index.search(query(messages), topK));
+
+        var offered = new ArrayList<ToolCallback>();
+        var leftOut = new LinkedHashMap<String, ToolCallback>();
+        byName.forEach((name, tool) -> {
+            if (selected.contains(name)) {
+                offered.add(tool);
+            } else {
+                leftOut.put(name, tool);
+            }
+        });
+        var discovery = ToolRegistry.bind(new ToolDiscoveryTool(index, leftOut, permits));
+        routedRequests.increment();
+        toolsOffered.add(offered.size());
+        toolsLeftOut.add(leftOut.size());
+        schemaTokensSaved.add(schemaTokens(leftOut.values()) - schemaTokens(discovery));
+        return new Routing(offered, discovery);
+    }
+
+    public ToolRoutingStats stats() {
+        return new ToolRoutingStats(requests.sum(), routedRequests.sum(), toolsOffered.sum(), toolsLeftOut.sum(),
+                schemaTokensSaved.sum());
+    }
+
+    private Index indexOf(Map<String, String> descriptions) {
+        var current = index;
+        if (current == null || !current.descriptions().equals(descriptions)) {
+            current = Index.of(descriptions);
+            index = current;
+        }
+        return current;
+    }
+
+    /** Text of the latest non-tool messages, the current one included. */
+    static String query(List<ChatMessage> messages) {
+        var sb = new StringBuilder();
+        int taken = 0;
+        for (int i = messages.size() - 1; i >= 0 && taken < QUERY_MESSAGES; i--) {
+            var message = messages.get(i);
+            if ("tool".equals(message.participant())) continue;
+            sb.append(message.plainText()).append('\n');
+            taken++;
+        }
+        return sb.toString();
+    }
+
+    private static long schemaTokens(Iterable<ToolCallback> tools) {
+        long tokens = 0;
+        for (var tool : tools) {
+            var definition = tool.getToolDefinition();
+            tokens += HeuristicTokenizer.INSTANCE.countTokens(definition.name())
+                    + HeuristicTokenizer.INSTANCE.countTokens(definition.description())
+                    + HeuristicTokenizer.INSTANCE.countTokens(definition.inputSchema());
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,12 @@
+package com.programmersdiary.aidaemon.chat;
+
+/**
+ * Tool routing since startup. {@code schemaTokensSaved} estimates the tokens of the tool definitions left
+ * out of requests, less those of the discovery tools sent in their place.
+ */
+public record ToolRoutingStats(long requests,
+                               long routedRequests,
+                               long toolsOffered,
+                               long toolsLeftOut,
+                               long schemaTokensSaved) {
+}
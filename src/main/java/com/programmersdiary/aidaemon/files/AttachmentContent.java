@@ -0,0 +1,7 @@
+package com.programmersdiary.aidaemon.files;
+
+import org.springframework.ai.content.Media;
+
+/** What an attachment contributes to a prompt: text appended to the message and, for images, audio and PDFs, media. */
+public record AttachmentContent(String text, Media media) {
+}
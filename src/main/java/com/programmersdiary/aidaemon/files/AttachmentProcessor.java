@@ -0,0 +1,187 @@
+package com.programmersdiary.aidaemon.files;
+
+import org.springframework.ai.content.Media;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Turns attachments into prompt content by size: small files are inlined, large text files are shown as a
+ * truncated preview and anything else too large is only referenced, to be paged through with the
+ * {@code readAttachment} tool. Stored files never change, so prepared content is cached per file id
+ * (bounded by {@code cache-max-bytes}) and a file is read at most once while it stays cached.
+ */
+@Service
+public class AttachmentProcessor {
+
+    static final int DEFAULT_INLINE_MAX_BYTES = 64 * 1024;
+    static final int DEFAULT_PREVIEW_CHARS = 4000;
+    static final int DEFAULT_MEDIA_MAX_BYTES = 5 * 1024 * 1024;
+    static final int DEFAULT_BINARY_INLINE_MAX_BYTES = 16 * 1024;
+    static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final Set<String> TEXT_APP_SUBTYPES = Set.of(
+            "json", "xml", "javascript", "typescript", "x-yaml", "yaml",
+            "toml", "x-toml", "graphql", "sql"
+    );
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "java", "py", "js", "ts", "jsx", "tsx", "go", "rs", "kt", "cs",
+            "cpp", "c", "h", "rb", "php", "swift", "scala", "sh", "bash",
+            "txt", "md", "yaml", "yml", "toml", "ini", "xml", "html", "css",
+            "json", "sql", "graphql", "tf", "properties", "env"
+    );
+
+    private final FileStorageService fileStorageService;
+    private final int inlineMaxBytes;
+    private final int previewChars;
+    private final int mediaMaxBytes;
+    private final int binaryInlineMaxBytes;
+    private final long cacheMaxBytes;
+    private final LinkedHashMap<String, AttachmentContent> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    public AttachmentProcessor(FileStorageService fileStorageService) {
+        this(fileStorageService, DEFAULT_INLINE_MAX_BYTES, DEFAULT_PREVIEW_CHARS, DEFAULT_MEDIA_MAX_BYTES,
+                DEFAULT_BINARY_INLINE_MAX_BYTES, DEFAULT_CACHE_MAX_BYTES);
+    }
+
+    @Autowired
+    public AttachmentProcessor(FileStorageService fileStorageService,
+                               @Value("${aidaemon.attachments.inline-max-bytes:65536}") int inlineMaxBytes,
+                               @Value("${aidaemon.attachments.preview-chars:4000}") int previewChars,
+                               @Value("${aidaemon.attachments.media-max-bytes:5242880}") int mediaMaxBytes,
+                               @Value("${aidaemon.attachments.binary-inline-max-bytes:16384}") int binaryInlineMaxBytes,
+                               @Value("${aidaemon.attachments.cache-max-bytes:67108864}") long cacheMaxBytes) {
+        this.fileStorageService = fileStorageService;
+        this.inlineMaxBytes = inlineMaxBytes;
+        this.previewChars = previewChars;
+        this.mediaMaxBytes = mediaMaxBytes;
+        this.binaryInlineMaxBytes = binaryInlineMaxBytes;
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public AttachmentContent prepare(FileAttachment file) throws IOException {
+        synchronized (cache) {
+            var cached = cache.get(file.id());
+            if (cached != null) return cached;
+        }
+        var content = load(file);
+        synchronized (cache) {
+            if (cache.put(file.id(), content) == null) {
+                cachedBytes += weight(content);
+            }
+            var it = cache.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && it.hasNext()) {
+                cachedBytes -= weight(it.next().getValue());
+                it.remove();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * A page of an attachment of the given conversation: text files as text, other files base64-encoded.
+     * {@code offset} and {@code length} count bytes, so a page may start or end inside a multi-byte character.
+     */
+    public String read(String conversationId, String fileId, long offset, int length) throws IOException {
+        var file = fileStorageService.getAttachment(fileId);
+        var bytes = fileStorageService.readRange(conversationId, fileId, offset, length);
+        long size = fileStorageService.size(fileId);
+        var header = "Bytes " + offset + " to " + (offset + bytes.length) + " of " + size + " in " + file.name()
+                + (offset + bytes.length < size ? " (more remains)" : " (end of file)") + ":\n";
+        return isTextContent(parseSafeMimeType(file.mimeType()), file.name())
+                ? header + new String(bytes, StandardCharsets.UTF_8)
+                : header + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private AttachmentContent load(FileAttachment file) throws IOException {
+        var mimeType = parseSafeMimeType(file.mimeType());
+        long size = fileStorageService.size(file.id());
+        if (isNativeMedia(mimeType)) {
+            if (size <= mediaMaxBytes) {
+                return new AttachmentContent("",
+                        new Media(mimeType, new ByteArrayResource(fileStorageService.getBytes(file.id()))));
+            }
+            return new AttachmentContent(reference(file, size, "too large to attach"), null);
+        }
+        if (isTextContent(mimeType, file.name())) {
+            boolean complete = size <= inlineMaxBytes;
+            var text = readText(file.id(), complete ? Integer.MAX_VALUE : previewChars);
+            var heading = "\n\nFile: " + file.name();
+            if (!complete) {
+                heading += " (" + size + " bytes; showing the first " + text.length() + " characters, call "
+                        + "readAttachment with file id " + file.id() + " to read the rest)";
+            }
+            return new AttachmentContent(heading + "\n```" + fileExtension(file.name()) + "\n" + text + "\n```", null);
+        }
+        if (size <= binaryInlineMaxBytes) {
+            var b64 = Base64.getEncoder().encodeToString(fileStorageService.getBytes(file.id()));
+            return new AttachmentContent("\n\nFile: " + file.name() + " (" + file.mimeType() + ", base64-encoded):\n"
+                    + b64, null);
+        }
+        return new AttachmentContent(reference(file, size, "not inlined"), null);
+    }
+
+    private String readText(String id, int maxChars) throws IOException {
+        var sb = new StringBuilder();
+        try (var reader = new BufferedReader(new InputStreamReader(fileStorageService.openStream(id), StandardCharsets.UTF_8))) {
+            var buffer = new char[8192];
+            int read;
+            while (sb.length() < maxChars && (read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - sb.length()))) >= 0) {
+                sb.append(buffer, 0, read);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String reference(FileAttachment file, long size, String reason) {
+        return "\n\nFile: " + file.name() + " (" + file.mimeType() + ", " + size + " bytes, " + reason
+                + "; call readAttachment with file id " + file.id() + " to read it in pages)";
+    }
+
+    private static long weight(AttachmentContent content) {
+        long bytes = content.text().length() * 2L;
+        if (content.media() != null && content.media().getData() instanceof byte[] data) {
+            bytes += data.length;
+        }
+        return bytes;
+    }
+
+    private static boolean isNativeMedia(MimeType mimeType) {
+        return "image".equals(mimeType.getType())
+                || "audio".equals(mimeType.getType())
+                || ("application".equals(mimeType.getType()) && "pdf".equals(mimeType.getSubtype()));
+    }
+
+    private static boolean isTextContent(MimeType mimeType, String filename) {
+        if ("text".equals(mimeType.getType())) return true;
+        if ("application".equals(mimeType.getType()) && TEXT_APP_SUBTYPES.contains(mimeType.getSubtype())) return true;
+        return TEXT_EXTENSIONS.contains(fileExtension(filename));
+    }
+
+    private static MimeType parseSafeMimeType(String mimeTypeStr) {
+        try {
+            return MimeTypeUtils.parseMimeType(mimeTypeStr);
+        } catch (Exception e) {
+            return MimeTypeUtils.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private static String fileExtension(String filename) {
+        if (filename == null) return "";
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase() : "";
+    }
+}
@@ -5,9 +5,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class FileStorageService {
@@ -15,6 +22,7 @@ public class FileStorageService {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final Path conversationsDir;
+    private final Map<String, Path> filesDirs = new ConcurrentHashMap<>();
 
     public FileStorageService(
             @Value("${aidaemon.config-dir:#{systemProperties['user.home'] + '/.aidaemon'}}") String configDir) {
@@ -28,17 +36,12 @@ public class FileStorageService {
         Files.write(binaryPath(filesDir, id, originalName), data);
         var attachment = new FileAttachment(id, originalName, mimeType);
         OBJECT_MAPPER.writeValue(filesDir.resolve(id + ".meta").toFile(), attachment);
+        filesDirs.put(id, filesDir);
         return attachment;
     }
 
     public byte[] getBytes(String id) throws IOException {
-        var attachment = getAttachment(id);
-        var filesDir = findFilesDir(id);
-        var path = binaryPath(filesDir, id, attachment.name());
-        if (!Files.exists(path)) {
-            throw new IOException("File not found: " + id);
-        }
-        return Files.readAllBytes(path);
+        return Files.readAllBytes(existingBinaryPath(id));
     }
 
     public FileAttachment getAttachment(String id) throws IOException {
@@ -46,7 +49,58 @@ public class FileStorageService {
         return OBJECT_MAPPER.readValue(filesDir.resolve(id + ".meta").toFile(), FileAttachment.class);
     }
 
+    public long size(String id) throws IOException {
+        return Files.size(existingBinaryPath(id));
+    }
+
+    /** Streams the file instead of loading it; the caller closes the stream. */
+    public InputStream openStream(String id) throws IOException {
+        return Files.newInputStream(existingBinaryPath(id));
+    }
+
+    /**
+     * Up to {@code length} bytes starting at {@code offset} of a file stored in the given conversation;
+     * files of other conversations are not found. Empty past the end of the file.
+     */
+    public byte[] readRange(String conversationId, String id, long offset, int length) throws IOException {
+        requirePlainId(id);
+        var filesDir = filesDir(conversationId);
+        if (!Files.exists(filesDir.resolve(id + ".meta"))) {
+            throw new IOException("File metadata not found: " + id);
+        }
+        var attachment = OBJECT_MAPPER.readValue(filesDir.resolve(id + ".meta").toFile(), FileAttachment.class);
+        try (var channel = FileChannel.open(binaryPath(filesDir, id, attachment.name()), StandardOpenOption.READ)) {
+            var size = channel.size();
+            if (offset >= size || length <= 0) return new byte[0];
+            var buffer = ByteBuffer.allocate((int) Math.min(length, size - offset));
+            int read;
+            do {
+                read = channel.read(buffer, offset + buffer.position());
+            } while (read >= 0 && buffer.hasRemaining());
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    private Path existingBinaryPath(String id) throws IOException {
+        var attachment = getAttachment(id);
+        var path = binaryPath(findFilesDir(id), id, attachment.name());
+        if (!Files.exists(path)) {
+            throw new IOException("File not found: " + id);
+        }
+        return path;
+    }
+
+    /** Files never move between conversations, so a directory once found is remembered. */
     private Path findFilesDir(String id) throws IOException {
+        requirePlainId(id);
+        var known = filesDirs.get(id);
+        if (known != null && Files.exists(known.resolve(id + ".meta"))) return known;
+        var found = scanFilesDir(id);
+        filesDirs.put(id, found);
+        return found;
+    }
+
+    private Path scanFilesDir(String id) throws IOException {
         if (Files.exists(conversationsDir)) {
             try (var stream = Files.list(conversationsDir)) {
                 var found = stream
@@ -60,6 +114,13 @@ public class FileStorageService {
         throw new IOException("File metadata not found: " + id);
     }
 
+    /** Ids come from callers such as the model; one that could leave the files directory is not found. */
+    private static void requirePlainId(String id) throws IOException {
+        if (id == null || id.isEmpty() || id.contains("/") || id.contains("\\") || id.contains("..")) {
+            throw new IOException("File metadata not found: " + id);
+        }
+    }
+
     private Path filesDir(String conversationId) {
         return conversationsDir.resolve(conversationId).resolve("files");
     }
@@ -2,6 +2,7 @@ package com.programmersdiary.aidaemon.mcp;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmersdiary.aidaemon.storage.DurableFiles;
 import io.modelcontextprotocol.client.McpClient;
 import io.modelcontextprotocol.client.McpSyncClient;
 import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
@@ -40,6 +41,7 @@ public class McpService {
     private final Path mcpsDir;
     private final Duration initTimeout;
     private final Map<String, McpSyncClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, List<ToolCallback>> toolCallbacks = new ConcurrentHashMap<>();
 
     public McpService(
             @Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir,
@@ -64,6 +66,7 @@ public class McpService {
             }
         });
         clients.clear();
+        toolCallbacks.clear();
     }
 
     public void loadAll() {
@@ -78,6 +81,7 @@ public class McpService {
 
     private void loadConfig(Path configFile) {
         try {
+            DurableFiles.recover(configFile);
             var config = objectMapper.readValue(configFile.toFile(), McpServerConfig.class);
             var name = config.name() != null ? config.name()
                     : configFile.getFileName().toString().replace(".json", "");
@@ -93,9 +97,11 @@ public class McpService {
             var client = McpClient.sync(transport)
                     .requestTimeout(Duration.ofSeconds(30))
                     .initializationTimeout(initTimeout)
+                    .toolsChangeConsumer(tools -> toolCallbacks.remove(name))
                     .build();
             client.initialize();
             clients.put(name, client);
+            toolCallbacks.remove(name);
             log.info("Connected MCP server: {} ({})", name, config.type());
         } catch (Exception e) {
             log.error("Failed to connect MCP server {}: {}", name, e.getMessage(), e);
@@ -171,19 +177,17 @@ public class McpService {
     }
 
     public List<ToolCallback> getToolCallbacks() {
-        if (clients.isEmpty()) {
-            return List.of();
-        }
-        var provider = new SyncMcpToolCallbackProvider(List.copyOf(clients.values()));
-        return List.of(provider.getToolCallbacks());
+        return getToolCallbacksByServer().values().stream().flatMap(List::stream).toList();
     }
 
+    /**
+     * Tool callbacks per connected server. A server's tools are listed once and kept until it reconnects,
+     * is removed or reports that its tools changed.
+     */
     public Map<String, List<ToolCallback>> getToolCallbacksByServer() {
         var result = new java.util.LinkedHashMap<String, List<ToolCallback>>();
-        clients.forEach((serverName, client) -> {
-            var provider = new SyncMcpToolCallbackProvider(List.of(client));
-            result.put(serverName, List.of(provider.getToolCallbacks()));
-        });
+        clients.forEach((serverName, client) -> result.put(serverName, toolCallbacks.computeIfAbsent(serverName,
+                name -> List.of(new SyncMcpToolCallbackProvider(List.of(client)).getToolCallbacks()))));
         return result;
     }
 
@@ -194,7 +198,7 @@ public class McpService {
     public void addServer(String name, McpServerConfig config) {
         var configFile = mcpsDir.resolve(name + ".json");
         try {
-            objectMapper.writeValue(configFile.toFile(), config);
+            DurableFiles.writeJson(configFile, objectMapper, config);
             connectClient(name, config);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -204,7 +208,7 @@ public class McpService {
     public void writeServerConfig(String name, McpServerConfig config) {
         var configFile = mcpsDir.resolve(name + ".json");
         try {
-            objectMapper.writeValue(configFile.toFile(), config);
+            DurableFiles.writeJson(configFile, objectMapper, config);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -212,6 +216,7 @@ public class McpService {
 
     public boolean removeServer(String name) {
         var client = clients.remove(name);
+        toolCallbacks.remove(name);
         if (client != null) {
             try {
                 client.closeGracefully();
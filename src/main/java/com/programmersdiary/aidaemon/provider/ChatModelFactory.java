@@ -1,12 +1,12 @@
 package com.programmersdiary.aidaemon.provider;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.anthropic.AnthropicChatOptions;
 import org.springframework.ai.anthropic.api.AnthropicApi;
 import org.springframework.ai.anthropic.api.AnthropicCacheOptions;
 import org.springframework.ai.anthropic.api.AnthropicCacheStrategy;
 import org.springframework.ai.anthropic.api.AnthropicCacheTtl;
-import com.programmersdiary.aidaemon.provider.ProviderType;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.ollama.OllamaChatModel;
@@ -16,54 +16,113 @@ import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Chat models per provider. A model and its API client (with its HTTP clients and connection pools) are
+ * built once per provider configuration and reused across requests; tools travel with each request in
+ * {@link #promptOptions}. A provider's model is dropped when its configuration is saved or deleted.
+ */
 @Component
 public class ChatModelFactory {
 
-    public ChatModel create(ProviderConfig config, List<ToolCallback> tools) {
+    private final Map<String, CachedModel> models = new ConcurrentHashMap<>();
+    private final ProviderConfigRepository providerConfigRepository;
+    private final ToolCallingManager toolCallingManager;
+
+    private record CachedModel(ProviderConfig config, ChatModel model) {}
+
+    public ChatModelFactory() {
+        this.providerConfigRepository = null;
+        this.toolCallingManager = ToolCallingManager.builder().build();
+    }
+
+    @Autowired
+    public ChatModelFactory(ProviderConfigRepository providerConfigRepository, ToolCallingManager toolCallingManager) {
+        this.providerConfigRepository = providerConfigRepository;
+        this.toolCallingManager = toolCallingManager;
+    }
+
+    @PostConstruct
+    void init() {
+        if (providerConfigRepository != null) providerConfigRepository.addChangeListener(this::evict);
+    }
+
+    /** The provider's model, rebuilt only when its configuration changed since it was built. */
+    public ChatModel create(ProviderConfig config) {
+        return models.compute(config.id(), (id, cached) -> cached != null && cached.config().equals(config)
+                ? cached
+                : new CachedModel(config, build(config))).model();
+    }
+
+    public void evict(String providerId) {
+        models.remove(providerId);
+    }
+
+    /** Per-request options: the model, the tools for this request and provider-specific prompt caching. */
+    public ChatOptions promptOptions(ProviderConfig config, List<ToolCallback> tools) {
         return switch (config.type()) {
-            case OPENAI -> createOpenAi(config, tools);
-            case ANTHROPIC -> createAnthropic(config, tools);
-            case OLLAMA -> createOllama(config, tools);
-            case GEMINI -> createGemini(config, tools);
-            case DALLE_3 -> throw new UnsupportedOperationException(
-                    "DALL-E 3 is an image generation provider and cannot be used as a chat model");
+            case OPENAI -> OpenAiChatOptions.builder()
+                    .model(config.model() != null ? config.model() : "gpt-4o")
+                    .toolCallbacks(tools)
+                    .build();
+            case ANTHROPIC -> buildAnthropicOptions(config, tools);
+            case OLLAMA -> OllamaChatOptions.builder()
+                    .model(config.model() != null ? config.model() : "llama3.2")
+                    .toolCallbacks(tools)
+                    .build();
+            case GEMINI -> OpenAiChatOptions.builder()
+                    .model(config.model() != null ? config.model() : "gemini-2.0-flash")
+                    .toolCallbacks(tools)
+                    .promptCacheKey("aidaemon:" + config.id())
+                    .build();
+            case DALLE_3 -> throw dalle3();
         };
     }
 
-    public ChatOptions promptOptions(ProviderConfig config, List<ToolCallback> tools) {
-        return config.type() == ProviderType.ANTHROPIC
-                ? buildAnthropicOptions(config, tools)
-                : null;
+    ChatModel build(ProviderConfig config) {
+        return switch (config.type()) {
+            case OPENAI -> createOpenAi(config);
+            case ANTHROPIC -> createAnthropic(config);
+            case OLLAMA -> createOllama(config);
+            case GEMINI -> createGemini(config);
+            case DALLE_3 -> throw dalle3();
+        };
+    }
+
+    private static UnsupportedOperationException dalle3() {
+        return new UnsupportedOperationException(
+                "DALL-E 3 is an image generation provider and cannot be used as a chat model");
     }
 
-    private ChatModel createOpenAi(ProviderConfig config, List<ToolCallback> tools) {
+    private ChatModel createOpenAi(ProviderConfig config) {
         var apiBuilder = OpenAiApi.builder()
                 .apiKey(config.apiKey() != null ? config.apiKey() : "unused");
         if (config.baseUrl() != null) {
             apiBuilder.baseUrl(config.baseUrl());
         }
-        var options = OpenAiChatOptions.builder()
-                .model(config.model() != null ? config.model() : "gpt-4o")
-                .toolCallbacks(tools)
-                .build();
         return OpenAiChatModel.builder()
                 .openAiApi(apiBuilder.build())
-                .defaultOptions(options)
+                .defaultOptions((OpenAiChatOptions) promptOptions(config, List.of()))
+                .toolCallingManager(toolCallingManager)
                 .build();
     }
 
-    private ChatModel createAnthropic(ProviderConfig config, List<ToolCallback> tools) {
+    private ChatModel createAnthropic(ProviderConfig config) {
         var api = AnthropicApi.builder()
                 .apiKey(config.apiKey())
                 .build();
         return AnthropicChatModel.builder()
                 .anthropicApi(api)
-                .defaultOptions(buildAnthropicOptions(config, tools))
+                .defaultOptions(buildAnthropicOptions(config, List.of()))
+                .toolCallingManager(toolCallingManager)
                 .build();
     }
 
@@ -79,33 +138,26 @@ public class ChatModelFactory {
                 .build();
     }
 
-    private ChatModel createGemini(ProviderConfig config, List<ToolCallback> tools) {
+    private ChatModel createGemini(ProviderConfig config) {
         var api = OpenAiApi.builder()
                 .apiKey(config.apiKey())
                 .baseUrl(config.baseUrl() != null ? config.baseUrl() : "https://generativelanguage.googleapis.com/v1beta/openai")
                 .build();
-        var options = OpenAiChatOptions.builder()
-                .model(config.model() != null ? config.model() : "gemini-2.0-flash")
-                .toolCallbacks(tools)
-                .promptCacheKey("aidaemon:" + config.id())
-                .build();
         return OpenAiChatModel.builder()
                 .openAiApi(api)
-                .defaultOptions(options)
+                .defaultOptions((OpenAiChatOptions) promptOptions(config, List.of()))
+                .toolCallingManager(toolCallingManager)
                 .build();
     }
 
-    private ChatModel createOllama(ProviderConfig config, List<ToolCallback> tools) {
+    private ChatModel createOllama(ProviderConfig config) {
         var api = OllamaApi.builder()
                 .baseUrl(config.baseUrl() != null ? config.baseUrl() : "http://localhost:11434")
                 .build();
-        var options = OllamaChatOptions.builder()
-                .model(config.model() != null ? config.model() : "llama3.2")
-                .toolCallbacks(tools)
-                .build();
         return OllamaChatModel.builder()
                 .ollamaApi(api)
-                .defaultOptions(options)
+                .defaultOptions((OllamaChatOptions) promptOptions(config, List.of()))
+                .toolCallingManager(toolCallingManager)
                 .build();
     }
 }
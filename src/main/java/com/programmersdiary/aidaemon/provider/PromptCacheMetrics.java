@@ -0,0 +1,66 @@
+package com.programmersdiary.aidaemon.provider;
+
+import org.springframework.ai.anthropic.api.AnthropicApi;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts prompt tokens served from and written to provider prompt caches, taken from the usage the
+ * provider reports with each response. Anthropic reports cache reads and writes separately from its input
+ * tokens; OpenAI-compatible APIs (OpenAI, Gemini) report cached tokens as part of the prompt and no writes.
+ */
+@Component
+public class PromptCacheMetrics {
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder cacheReadTokens = new LongAdder();
+        final LongAdder cacheWriteTokens = new LongAdder();
+    }
+
+    public void record(String providerId, Usage usage) {
+        if (providerId == null || usage == null) return;
+        long read = 0;
+        long write = 0;
+        long prompt = valueOf(usage.getPromptTokens());
+        if (usage.getNativeUsage() instanceof AnthropicApi.Usage anthropic) {
+            read = valueOf(anthropic.cacheReadInputTokens());
+            write = valueOf(anthropic.cacheCreationInputTokens());
+            prompt = valueOf(anthropic.inputTokens()) + read + write;
+        } else if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAi && openAi.promptTokensDetails() != null) {
+            read = valueOf(openAi.promptTokensDetails().cachedTokens());
+        }
+        var c = counters.computeIfAbsent(providerId, id -> new Counters());
+        c.requests.increment();
+        c.promptTokens.add(prompt);
+        c.cacheReadTokens.add(read);
+        c.cacheWriteTokens.add(write);
+    }
+
+    public List<PromptCacheStats> stats() {
+        return counters.entrySet().stream()
+                .map(e -> {
+                    var c = e.getValue();
+                    long prompt = c.promptTokens.sum();
+                    long read = c.cacheReadTokens.sum();
+                    return new PromptCacheStats(e.getKey(), c.requests.sum(), prompt, read,
+                            c.cacheWriteTokens.sum(), prompt > 0 ? (double) read / prompt : 0);
+                })
+                .sorted(Comparator.comparing(PromptCacheStats::providerId))
+                .toList();
+    }
+
+    private static long valueOf(Integer tokens) {
+        return tokens != null ? tokens : 0;
+    }
+}
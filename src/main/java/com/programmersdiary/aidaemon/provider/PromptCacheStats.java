@@ -0,0 +1,13 @@
+package com.programmersdiary.aidaemon.provider;
+
+/**
+ * Prompt-cache usage of one provider since startup. {@code promptTokens} includes cached tokens;
+ * {@code hitRate} is the share of prompt tokens read from the cache.
+ */
+public record PromptCacheStats(String providerId,
+                               long requests,
+                               long promptTokens,
+                               long cacheReadTokens,
+                               long cacheWriteTokens,
+                               double hitRate) {
+}
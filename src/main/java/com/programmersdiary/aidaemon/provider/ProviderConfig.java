@@ -6,5 +6,6 @@ public record ProviderConfig(
         ProviderType type,
         String apiKey,
         String baseUrl,
-        String model) {
+        String model,
+        Integer maxContextTokens) {
 }
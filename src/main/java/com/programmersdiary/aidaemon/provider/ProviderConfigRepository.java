@@ -3,17 +3,18 @@ package com.programmersdiary.aidaemon.provider;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmersdiary.aidaemon.storage.DurableFiles;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @Repository
 public class ProviderConfigRepository {
@@ -22,6 +23,7 @@ public class ProviderConfigRepository {
             .enable(SerializationFeature.INDENT_OUTPUT);
     private final Path configFile;
     private final List<ProviderConfig> configs = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
 
     public ProviderConfigRepository(
             @Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir) {
@@ -30,10 +32,13 @@ public class ProviderConfigRepository {
 
     @PostConstruct
     void load() throws IOException {
-        if (Files.exists(configFile)) {
-            configs.addAll(objectMapper.readValue(
-                    configFile.toFile(), new TypeReference<List<ProviderConfig>>() {}));
-        }
+        DurableFiles.readJson(configFile, objectMapper, new TypeReference<List<ProviderConfig>>() {})
+                .ifPresent(configs::addAll);
+    }
+
+    /** Called with the provider id after a configuration is saved or deleted. */
+    public void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
     }
 
     public List<ProviderConfig> findAll() {
@@ -48,6 +53,7 @@ public class ProviderConfigRepository {
         configs.removeIf(c -> c.id().equals(config.id()));
         configs.add(config);
         persist();
+        changeListeners.forEach(listener -> listener.accept(config.id()));
         return config;
     }
 
@@ -55,14 +61,14 @@ public class ProviderConfigRepository {
         boolean removed = configs.removeIf(c -> c.id().equals(id));
         if (removed) {
             persist();
+            changeListeners.forEach(listener -> listener.accept(id));
         }
         return removed;
     }
 
-    private void persist() {
+    private synchronized void persist() {
         try {
-            Files.createDirectories(configFile.getParent());
-            objectMapper.writeValue(configFile.toFile(), configs);
+            DurableFiles.writeJson(configFile, objectMapper, configs);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -3,13 +3,13 @@ package com.programmersdiary.aidaemon.scheduling;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmersdiary.aidaemon.storage.DurableFiles;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
@@ -30,10 +30,8 @@ public class ScheduledJobRepository {
 
     @PostConstruct
     void load() throws IOException {
-        if (Files.exists(jobsFile)) {
-            jobs.addAll(objectMapper.readValue(
-                    jobsFile.toFile(), new TypeReference<List<ScheduledJob>>() {}));
-        }
+        DurableFiles.readJson(jobsFile, objectMapper, new TypeReference<List<ScheduledJob>>() {})
+                .ifPresent(jobs::addAll);
     }
 
     public List<ScheduledJob> findAll() {
@@ -59,10 +57,9 @@ public class ScheduledJobRepository {
         return removed;
     }
 
-    private void persist() {
+    private synchronized void persist() {
         try {
-            Files.createDirectories(jobsFile.getParent());
-            objectMapper.writeValue(jobsFile.toFile(), jobs);
+            DurableFiles.writeJson(jobsFile, objectMapper, jobs);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
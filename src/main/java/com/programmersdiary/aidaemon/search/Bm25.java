@@ -0,0 +1,112 @@
+package com.programmersdiary.aidaemon.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BM25 ranking shared by conversation search, memory and tool routing: the tokenizer, the term weight and an
+ * immutable in-memory index over a fixed list of documents. Indexes that grow over time keep their own
+ * postings and score them with {@link #idf} and {@link #termScore}.
+ */
+public final class Bm25 {
+
+    public static final int MIN_TERM_LENGTH = 2;
+    public static final int MAX_TERM_LENGTH = 64;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final List<Map<String, Integer>> termFrequencies;
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private final int[] lengths;
+    private final double averageLength;
+
+    private Bm25(List<List<String>> documents) {
+        this.termFrequencies = new ArrayList<>(documents.size());
+        this.lengths = new int[documents.size()];
+        long totalLength = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            var terms = documents.get(i);
+            var frequencies = termFrequencies(terms);
+            frequencies.keySet().forEach(term -> documentFrequencies.merge(term, 1, Integer::sum));
+            termFrequencies.add(frequencies);
+            lengths[i] = terms.size();
+            totalLength += terms.size();
+        }
+        this.averageLength = documents.isEmpty() ? 0 : (double) totalLength / documents.size();
+    }
+
+    /** Index over documents given as their {@link #tokenize tokenized} terms, in order. */
+    public static Bm25 of(List<List<String>> documents) {
+        return new Bm25(documents);
+    }
+
+    public int size() {
+        return lengths.length;
+    }
+
+    /** Positions of the documents matching any query term, best first. */
+    public List<Integer> search(String query, int limit) {
+        var terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || limit <= 0 || lengths.length == 0) return List.of();
+        var scores = new double[lengths.length];
+        for (var term : terms) {
+            var documentFrequency = documentFrequencies.get(term);
+            if (documentFrequency == null) continue;
+            double idf = idf(lengths.length, documentFrequency);
+            for (int i = 0; i < lengths.length; i++) {
+                var tf = termFrequencies.get(i).get(term);
+                if (tf != null) scores[i] += termScore(idf, tf, lengths[i], averageLength);
+            }
+        }
+        var ranked = new ArrayList<Integer>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) ranked.add(i);
+        }
+        ranked.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        return ranked.size() > limit ? List.copyOf(ranked.subList(0, limit)) : ranked;
+    }
+
+    public static double idf(int documents, int documentFrequency) {
+        return Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /** Contribution of a term found {@code tf} times in a document of {@code length} terms. */
+    public static double termScore(double idf, int tf, int length, double averageLength) {
+        double norm = K1 * (1 - B + B * length / averageLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    public static Map<String, Integer> termFrequencies(List<String> terms) {
+        var frequencies = new HashMap<String, Integer>();
+        for (var term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Lower-cased runs of letters and digits; shorter than {@link #MIN_TERM_LENGTH} is dropped and longer than
+     * {@link #MAX_TERM_LENGTH} is cut.
+     */
+    public static List<String> tokenize(String text) {
+        var terms = new ArrayList<String>();
+        if (text == null || text.isEmpty()) return terms;
+        var lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start >= MIN_TERM_LENGTH) terms.add(lower.substring(start, Math.min(i, start + MAX_TERM_LENGTH)));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,36 @@
+package com.programmersdiary.aidaemon.skills;
+
+import com.programmersdiary.aidaemon.files.AttachmentProcessor;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+public class AttachmentTool {
+
+    static final int DEFAULT_PAGE_BYTES = 16 * 1024;
+    static final int MAX_PAGE_BYTES = 64 * 1024;
+
+    private final AttachmentProcessor attachmentProcessor;
+    private final String conversationId;
+
+    public AttachmentTool(AttachmentProcessor attachmentProcessor, String conversationId) {
+        this.attachmentProcessor = attachmentProcessor;
+        this.conversationId = conversationId;
+    }
+
+    @Tool(description = """
+            Read part of a file attached to this conversation, for attachments that were only previewed or referenced.
+            Text files are returned as text, other files base64-encoded. The reply says whether more remains.
+            """)
+    public String readAttachment(
+            @ToolParam(description = "File id from the attachment note") String fileId,
+            @ToolParam(description = "Byte offset to start from. Defaults to 0.", required = false) Long offset,
+            @ToolParam(description = "Number of bytes to read, at most 65536. Defaults to 16384.", required = false) Integer length) {
+        long from = offset != null ? Math.max(0, offset) : 0;
+        int count = length != null ? Math.min(Math.max(1, length), MAX_PAGE_BYTES) : DEFAULT_PAGE_BYTES;
+        try {
+            return attachmentProcessor.read(conversationId, fileId, from, count);
+        } catch (Exception e) {
+            return "Cannot read attachment " + fileId + ": " + e.getMessage();
+        }
+    }
+}
@@ -1,56 +1,41 @@
 package com.programmersdiary.aidaemon.skills;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.programmersdiary.aidaemon.chat.ChatMessage;
+import com.programmersdiary.aidaemon.chat.ConversationRepository;
 import com.programmersdiary.aidaemon.scheduling.ScheduledJob;
 import com.programmersdiary.aidaemon.scheduling.ScheduledJobExecutor;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class ChatTools {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-
     private final SkillsService skillsService;
     private final ScheduledJobExecutor jobExecutor;
     private final String currentProviderId;
-    private final List<ChatMessage> conversationMessages;
+    private final ConversationRepository conversationRepository;
+    private final String conversationId;
     private final int charsContextWindow;
-    private final String botName;
 
     public ChatTools(SkillsService skillsService,
                      ScheduledJobExecutor jobExecutor,
                      String currentProviderId) {
-        this(skillsService, jobExecutor, currentProviderId, null, 0, null);
+        this(skillsService, jobExecutor, currentProviderId, null, null, 0);
     }
 
     public ChatTools(SkillsService skillsService,
                      ScheduledJobExecutor jobExecutor,
                      String currentProviderId,
-                     List<ChatMessage> conversationMessages,
+                     ConversationRepository conversationRepository,
+                     String conversationId,
                      int charsContextWindow) {
-        this(skillsService, jobExecutor, currentProviderId, conversationMessages, charsContextWindow, null);
-    }
-
-    public ChatTools(SkillsService skillsService,
-                     ScheduledJobExecutor jobExecutor,
-                     String currentProviderId,
-                     List<ChatMessage> conversationMessages,
-                     int charsContextWindow,
-                     String botName) {
         this.skillsService = skillsService;
         this.jobExecutor = jobExecutor;
         this.currentProviderId = currentProviderId;
-        this.conversationMessages = conversationMessages != null ? List.copyOf(conversationMessages) : null;
+        this.conversationRepository = conversationRepository;
+        this.conversationId = conversationId;
         this.charsContextWindow = charsContextWindow;
-        this.botName = botName;
     }
 
     @Tool(description = "Save information to persistent memory. Use when the user asks you to remember something.")
@@ -61,6 +46,19 @@ public class ChatTools {
         return "Saved to memory: " + key + " = " + value;
     }
 
+    @Tool(description = "Search persistent memory. Only the memories most relevant to the current message are shown in the prompt; use this to look up others.")
+    public String searchMemory(
+            @ToolParam(description = "Words to look for in memory keys and values") String query,
+            @ToolParam(description = "Maximum number of entries to return. Defaults to 10.", required = false) Integer limit) {
+        var found = skillsService.searchMemory(query, limit != null && limit > 0 ? limit : 10);
+        if (found.isEmpty()) {
+            return "No memory entries match: " + query;
+        }
+        return found.stream()
+                .map(e -> e.getKey() + ": " + e.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+
     @Tool(description = "Read a file from a skill folder. Path is relative to the skills root, e.g. 'github-cli/instructions.md'.")
     public String readSkillFile(
             @ToolParam(description = "Relative path within the skills folder, e.g. 'skill-name/file.md'") String relativePath) {
@@ -123,64 +121,49 @@ public class ChatTools {
                 .collect(Collectors.joining("\n"));
     }
 
-    @Tool(description = "Retrieve older conversation messages by index range. Provide startIndex (inclusive); optionally endIndex (exclusive). If endIndex is omitted, returns all messages from startIndex to the end. Result is capped by context window. Returns: startIndex, actualEndIndex (exclusive), and the message list.")
+    @Tool(description = "Retrieve older conversation messages by index range. Provide startIndex (inclusive); optionally endIndex (exclusive). If endIndex is omitted, returns all messages from startIndex to the end. Result is capped by context window; when more messages remain in the range, the result ends with a nextCursor. Pass it as cursor (instead of startIndex and endIndex) to get the next page. Returns: startIndex, actualEndIndex (exclusive), and the message list.")
     public String retrieveOlderMessages(
-            @ToolParam(description = "Start index (inclusive), 0-based") int startIndexInclusive,
-            @ToolParam(description = "End index (exclusive). Omit to include all from startIndex to end") Integer endIndexExclusive) {
-        if (conversationMessages == null || conversationMessages.isEmpty()) {
+            @ToolParam(description = "Start index (inclusive), 0-based", required = false) Integer startIndexInclusive,
+            @ToolParam(description = "End index (exclusive). Omit to include all from startIndex to end", required = false) Integer endIndexExclusive,
+            @ToolParam(description = "nextCursor from a previous result, to continue where it stopped", required = false) String cursor) {
+        if (conversationRepository == null || conversationId == null) {
             return "No conversation context available.";
         }
-        int size = conversationMessages.size();
-        if (startIndexInclusive < 0 || startIndexInclusive >= size) {
-            return "Invalid startIndexInclusive: " + startIndexInclusive + ". Conversation has " + size + " messages (indices 0 to " + (size - 1) + ").";
+        int start;
+        int end;
+        if (cursor != null && !cursor.isBlank()) {
+            var bounds = cursor.trim().split("-", 2);
+            try {
+                start = Integer.parseInt(bounds[0]);
+                end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : Integer.MAX_VALUE;
+            } catch (NumberFormatException e) {
+                return "Invalid cursor: " + cursor;
+            }
+        } else if (startIndexInclusive != null) {
+            start = startIndexInclusive;
+            end = endIndexExclusive != null ? endIndexExclusive : Integer.MAX_VALUE;
+        } else {
+            return "Provide startIndexInclusive or cursor.";
         }
-        int end = endIndexExclusive == null ? size : Math.min(endIndexExclusive, size);
-        if (end <= startIndexInclusive) {
-            return "Invalid range: endIndexExclusive must be greater than startIndexInclusive.";
+        var page = conversationRepository.findHistory(conversationId, start, end, charsContextWindow).orElse(null);
+        if (page == null || page.total() == 0) {
+            return "No conversation context available.";
         }
-        int actualEnd = startIndexInclusive;
-        int totalChars = 0;
-        boolean hasLimit = charsContextWindow > 0;
-        for (int i = startIndexInclusive; i < end; i++) {
-            String displayContent = contentWithoutReasoningAndTools(conversationMessages.get(i), botName);
-            int len = displayContent.length();
-            if (hasLimit && totalChars + len > charsContextWindow) {
-                break;
-            }
-            totalChars += len;
-            actualEnd = i + 1;
+        if (start < 0 || start >= page.total()) {
+            return "Invalid startIndexInclusive: " + start + ". Conversation has " + page.total() + " messages (indices 0 to " + (page.total() - 1) + ").";
         }
-        var slice = conversationMessages.subList(startIndexInclusive, actualEnd);
-        var lines = new ArrayList<String>();
-        for (int i = 0; i < slice.size(); i++) {
-            var m = slice.get(i);
-            String displayContent = contentWithoutReasoningAndTools(m, botName);
-            lines.add("[" + (startIndexInclusive + i) + "] " + m.participant() + ": " + displayContent);
+        if (end <= start) {
+            return "Invalid range: endIndexExclusive must be greater than startIndexInclusive.";
         }
-        return "startIndex: " + startIndexInclusive + ", actualEndIndex: " + actualEnd + ", messages:\n" + String.join("\n", lines);
-    }
-
-    private static String contentWithoutReasoningAndTools(ChatMessage message, String replyingBotName) {
-        String content = message.content();
-        if (content == null) return "";
-        if (replyingBotName == null || !replyingBotName.equals(message.participant())) return content;
-        if (!content.trim().startsWith("{\"parts\":")) return content;
-        try {
-            @SuppressWarnings("unchecked")
-            var map = OBJECT_MAPPER.readValue(content, Map.class);
-            var parts = (List<?>) map.get("parts");
-            if (parts == null) return content;
-            var sb = new StringBuilder();
-            for (var o : parts) {
-                if (!(o instanceof Map<?, ?> p)) continue;
-                var type = p.get("type");
-                if (!"answer".equals(type)) continue;
-                var partContent = p.get("content");
-                if (partContent != null) sb.append(partContent.toString());
-            }
-            return sb.toString();
-        } catch (JsonProcessingException | ClassCastException e) {
-            return content;
+        var sb = new StringBuilder("startIndex: ").append(page.from())
+                .append(", actualEndIndex: ").append(page.to()).append(", messages:");
+        for (var m : page.messages()) {
+            sb.append("\n[").append(m.index()).append("] ").append(m.participant()).append(": ").append(m.text());
+        }
+        if (page.to() < Math.min(end, page.total())) {
+            sb.append("\nnextCursor: ").append(page.to());
+            if (end != Integer.MAX_VALUE) sb.append('-').append(end);
         }
+        return sb.toString();
     }
 }
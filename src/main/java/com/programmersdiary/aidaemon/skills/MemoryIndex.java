@@ -0,0 +1,75 @@
+package com.programmersdiary.aidaemon.skills;
+
+import com.programmersdiary.aidaemon.search.Bm25;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Bm25} index over one snapshot of memory. Keys count twice, as they name what an entry is about.
+ * Immutable; build a new one when memory changes.
+ */
+public final class MemoryIndex {
+
+    private final Map<String, String> entries;
+    private final List<Map.Entry<String, String>> documents;
+    private final Bm25 bm25;
+    private final int totalChars;
+
+    private MemoryIndex(Map<String, String> memory) {
+        this.entries = Collections.unmodifiableMap(new LinkedHashMap<>(memory));
+        this.documents = List.copyOf(entries.entrySet());
+        var terms = new ArrayList<List<String>>(documents.size());
+        int chars = 0;
+        for (var entry : documents) {
+            var document = Bm25.tokenize(entry.getKey());
+            document.addAll(Bm25.tokenize(entry.getKey()));
+            document.addAll(Bm25.tokenize(entry.getValue()));
+            terms.add(document);
+            chars += length(entry);
+        }
+        this.bm25 = Bm25.of(terms);
+        this.totalChars = chars;
+    }
+
+    public static MemoryIndex of(Map<String, String> memory) {
+        return new MemoryIndex(memory);
+    }
+
+    /** The indexed snapshot. */
+    public Map<String, String> entries() {
+        return entries;
+    }
+
+    public boolean fitsWithin(int maxEntries, int maxChars) {
+        return documents.size() <= maxEntries && totalChars <= maxChars;
+    }
+
+    /** Entries matching any query term, best first. */
+    public List<Map.Entry<String, String>> search(String query, int limit) {
+        return bm25.search(query, limit).stream().map(documents::get).toList();
+    }
+
+    /** Best matches for the query, at most {@code maxEntries} of them and {@code maxChars} in total. */
+    public List<Map.Entry<String, String>> select(String query, int maxEntries, int maxChars) {
+        var selected = new ArrayList<Map.Entry<String, String>>();
+        int chars = 0;
+        for (var entry : search(query, maxEntries)) {
+            if (chars + length(entry) > maxChars) continue;
+            selected.add(entry);
+            chars += length(entry);
+        }
+        return selected;
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    private static int length(Map.Entry<String, String> entry) {
+        return entry.getKey().length() + 2 + (entry.getValue() != null ? entry.getValue().length() : 0);
+    }
+}
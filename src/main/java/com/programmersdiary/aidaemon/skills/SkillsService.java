@@ -3,6 +3,7 @@ package com.programmersdiary.aidaemon.skills;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.programmersdiary.aidaemon.storage.DurableFiles;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -11,6 +12,8 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -19,11 +22,17 @@ import java.util.Map;
 @Service
 public class SkillsService {
 
+    private static final TypeReference<LinkedHashMap<String, String>> MEMORY_TYPE = new TypeReference<>() {};
+
     private final ObjectMapper objectMapper = new ObjectMapper()
             .enable(SerializationFeature.INDENT_OUTPUT);
     private final Path configDir;
     private final Path skillsDir;
     private final Path memoryFile;
+    private LinkedHashMap<String, String> memory;
+    private FileTime memoryModified;
+    private long memorySize;
+    private MemoryIndex memoryIndex;
 
     public SkillsService(
             @Value("${aidaemon.config-dir:${user.home}/.aidaemon}") String configDir) {
@@ -35,28 +44,55 @@ public class SkillsService {
     @PostConstruct
     void init() throws IOException {
         Files.createDirectories(skillsDir);
-        if (!Files.exists(memoryFile)) {
-            objectMapper.writeValue(memoryFile.toFile(), new LinkedHashMap<>());
+        if (DurableFiles.readJson(memoryFile, objectMapper, MEMORY_TYPE).isEmpty()) {
+            DurableFiles.writeJson(memoryFile, objectMapper, new LinkedHashMap<>());
         }
     }
 
-    public Map<String, String> readMemory() {
+    /** Parsed once per change of the file, since every bot turn reads memory; callers get their own copy. */
+    public synchronized Map<String, String> readMemory() {
+        return new LinkedHashMap<>(currentMemory());
+    }
+
+    /** Index over the current memory, rebuilt only when the file changed. */
+    public synchronized MemoryIndex memoryIndex() {
+        var current = currentMemory();
+        if (memoryIndex == null) {
+            memoryIndex = MemoryIndex.of(current);
+        }
+        return memoryIndex;
+    }
+
+    /** Memory entries most relevant to the query, best first. */
+    public List<Map.Entry<String, String>> searchMemory(String query, int limit) {
+        return memoryIndex().search(query, limit);
+    }
+
+    private Map<String, String> currentMemory() {
         try {
-            return objectMapper.readValue(memoryFile.toFile(),
-                    new TypeReference<LinkedHashMap<String, String>>() {});
+            var attributes = Files.readAttributes(memoryFile, BasicFileAttributes.class);
+            if (memory == null || !attributes.lastModifiedTime().equals(memoryModified)
+                    || attributes.size() != memorySize) {
+                memory = objectMapper.readValue(memoryFile.toFile(), MEMORY_TYPE);
+                memoryIndex = null;
+                memoryModified = attributes.lastModifiedTime();
+                memorySize = attributes.size();
+            }
+            return memory;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    public void saveMemory(String key, String value) {
-        var memory = readMemory();
-        memory.put(key, value);
+    public synchronized void saveMemory(String key, String value) {
+        var updated = readMemory();
+        updated.put(key, value);
         try {
-            objectMapper.writeValue(memoryFile.toFile(), memory);
+            DurableFiles.writeJson(memoryFile, objectMapper, updated);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        memory = null;
     }
 
     public String readFile(String relativePath) {
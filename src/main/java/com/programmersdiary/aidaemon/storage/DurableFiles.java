@@ -0,0 +1,125 @@
+package com.programmersdiary.aidaemon.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Crash-safe file replacement: content is written to a temp file next to the target, fsynced, atomically
+ * renamed over the target and the directory is fsynced, so a reader sees either the old or the new file.
+ * {@link #readJson} also repairs what an interrupted write can leave behind.
+ */
+public final class DurableFiles {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableFiles.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private DurableFiles() {
+    }
+
+    public static void writeJson(Path target, ObjectMapper mapper, Object value) throws IOException {
+        write(target, mapper.writeValueAsBytes(value));
+    }
+
+    public static void write(Path target, byte[] content) throws IOException {
+        var dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        var tmp = Files.createTempFile(dir, tempPrefix(target), TEMP_SUFFIX);
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            move(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        syncDirectory(dir);
+    }
+
+    /**
+     * Reads a file written by {@link #writeJson}. Temp files of interrupted writes are removed first;
+     * a target that is empty or cannot be parsed (e.g. truncated by an older in-place write) is moved aside
+     * to {@code <name>.corrupt} and treated as missing.
+     */
+    public static <T> Optional<T> readJson(Path target, ObjectMapper mapper, TypeReference<T> type) throws IOException {
+        return readJson(target, mapper, mapper.getTypeFactory().constructType(type));
+    }
+
+    public static <T> Optional<T> readJson(Path target, ObjectMapper mapper, Class<T> type) throws IOException {
+        return readJson(target, mapper, mapper.constructType(type));
+    }
+
+    private static <T> Optional<T> readJson(Path target, ObjectMapper mapper, JavaType type) throws IOException {
+        recover(target);
+        if (!Files.exists(target)) return Optional.empty();
+        try {
+            return Optional.ofNullable(mapper.readValue(target.toFile(), type));
+        } catch (JsonProcessingException e) {
+            var quarantined = target.resolveSibling(target.getFileName() + CORRUPT_SUFFIX);
+            Files.move(target, quarantined, StandardCopyOption.REPLACE_EXISTING);
+            log.warn("Moved unreadable {} to {}: {}", target, quarantined.getFileName(), e.getOriginalMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Removes temp files left by writes to {@code target} that never reached the rename. Such writes
+     * were not acknowledged to their callers, so the target remains the latest committed version.
+     */
+    public static void recover(Path target) throws IOException {
+        var dir = target.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir)) return;
+        var prefix = tempPrefix(target);
+        try (var stream = Files.list(dir)) {
+            for (var leftover : stream.filter(p -> isTempOf(p, prefix)).toList()) {
+                Files.deleteIfExists(leftover);
+                log.info("Removed incomplete write {}", leftover);
+            }
+        }
+    }
+
+    private static boolean isTempOf(Path path, String prefix) {
+        var name = path.getFileName().toString();
+        return name.startsWith(prefix) && name.endsWith(TEMP_SUFFIX);
+    }
+
+    private static String tempPrefix(Path target) {
+        return "." + target.getFileName() + ".";
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Makes the rename itself durable. Not supported on every platform (e.g. Windows), where it is skipped. */
+    public static void syncDirectory(Path dir) {
+        try (var channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory fsync not supported for {}: {}", dir, e.getMessage());
+        }
+    }
+}
@@ -2,8 +2,13 @@ package com.programmersdiary.aidaemon.web;
 
 import com.programmersdiary.aidaemon.chat.Conversation;
 import com.programmersdiary.aidaemon.chat.ConversationService;
+import com.programmersdiary.aidaemon.chat.ConversationStorageStats;
+import com.programmersdiary.aidaemon.chat.ConversationSummary;
+import com.programmersdiary.aidaemon.chat.MessagePage;
+import com.programmersdiary.aidaemon.chat.SearchHit;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.Map;
@@ -22,6 +27,9 @@ record CreateConversationRequest(String name, String providerId, List<String> pa
 @RequestMapping("/api/conversations")
 public class ConversationController {
 
+    static final int MAX_PAGE_SIZE = 500;
+    static final int MAX_SEARCH_RESULTS = 100;
+
     private final ConversationService conversationService;
 
     public ConversationController(ConversationService conversationService) {
@@ -64,11 +72,38 @@ public class ConversationController {
     }
 
     @GetMapping
-    public List<Conversation> list(@RequestParam(required = false) String participant) {
-        if (participant != null && !participant.isBlank()) {
-            return conversationService.listForParticipant(participant);
+    public List<ConversationSummary> list(@RequestParam(required = false) String participant) {
+        return conversationService.listSummaries(blankToNull(participant));
+    }
+
+    @GetMapping("/search")
+    public List<SearchHit> search(@RequestParam String q,
+                                  @RequestParam(required = false) String participant,
+                                  @RequestParam(required = false) String conversationId,
+                                  @RequestParam(defaultValue = "10") int limit) {
+        if (q.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must not be blank");
         }
-        return conversationService.listAll();
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        return conversationService.search(q, blankToNull(participant), blankToNull(conversationId),
+                Math.min(limit, MAX_SEARCH_RESULTS));
+    }
+
+    @GetMapping("/storage-stats")
+    public ConversationStorageStats storageStats() {
+        return conversationService.storageStats();
+    }
+
+    @GetMapping("/{id}/messages")
+    public MessagePage messages(@PathVariable String id,
+                                @RequestParam(defaultValue = "0") int from,
+                                @RequestParam(defaultValue = "100") int limit) {
+        if (from < 0 || limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from and limit must not be negative");
+        }
+        return conversationService.getMessages(id, from, Math.min(limit, MAX_PAGE_SIZE));
     }
 
     @DeleteMapping("/{id}")
@@ -81,4 +116,8 @@ public class ConversationController {
     public Conversation get(@PathVariable String id) {
         return conversationService.get(id);
     }
+
+    private static String blankToNull(String value) {
+        return value != null && !value.isBlank() ? value : null;
+    }
 }
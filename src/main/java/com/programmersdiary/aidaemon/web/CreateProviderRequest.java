@@ -7,5 +7,6 @@ public record CreateProviderRequest(
         ProviderType type,
         String apiKey,
         String baseUrl,
-        String model) {
+        String model,
+        Integer maxContextTokens) {
 }
@@ -2,6 +2,8 @@ package com.programmersdiary.aidaemon.web;
 
 import com.programmersdiary.aidaemon.files.FileAttachment;
 import com.programmersdiary.aidaemon.files.FileStorageService;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -27,12 +29,12 @@ public class FileController {
     }
 
     @GetMapping("/api/files/{id}")
-    public ResponseEntity<byte[]> download(@PathVariable String id) throws IOException {
+    public ResponseEntity<Resource> download(@PathVariable String id) throws IOException {
         var attachment = fileStorageService.getAttachment(id);
-        var bytes = fileStorageService.getBytes(id);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + attachment.name() + "\"")
                 .contentType(MediaType.parseMediaType(attachment.mimeType()))
-                .body(bytes);
+                .contentLength(fileStorageService.size(id))
+                .body(new InputStreamResource(fileStorageService.openStream(id)));
     }
 }
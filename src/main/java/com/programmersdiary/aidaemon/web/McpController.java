@@ -1,5 +1,7 @@
 package com.programmersdiary.aidaemon.web;
 
+import com.programmersdiary.aidaemon.chat.ToolRouter;
+import com.programmersdiary.aidaemon.chat.ToolRoutingStats;
 import com.programmersdiary.aidaemon.mcp.McpServerConfig;
 import com.programmersdiary.aidaemon.mcp.McpService;
 import org.springframework.http.HttpStatus;
@@ -14,9 +16,11 @@ import java.util.Map;
 public class McpController {
 
     private final McpService mcpService;
+    private final ToolRouter toolRouter;
 
-    public McpController(McpService mcpService) {
+    public McpController(McpService mcpService, ToolRouter toolRouter) {
         this.mcpService = mcpService;
+        this.toolRouter = toolRouter;
     }
 
     @GetMapping
@@ -24,6 +28,11 @@ public class McpController {
         return mcpService.getConnectedServers();
     }
 
+    @GetMapping("/routing-stats")
+    public ToolRoutingStats routingStats() {
+        return toolRouter.stats();
+    }
+
     @PostMapping("/reload")
     public Map<String, Object> reload() {
         mcpService.loadAll();
@@ -1,5 +1,7 @@
 package com.programmersdiary.aidaemon.web;
 
+import com.programmersdiary.aidaemon.provider.PromptCacheMetrics;
+import com.programmersdiary.aidaemon.provider.PromptCacheStats;
 import com.programmersdiary.aidaemon.provider.ProviderConfig;
 import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
 import org.springframework.http.HttpStatus;
@@ -14,9 +16,11 @@ import java.util.UUID;
 public class ProviderController {
 
     private final ProviderConfigRepository repository;
+    private final PromptCacheMetrics promptCacheMetrics;
 
-    public ProviderController(ProviderConfigRepository repository) {
+    public ProviderController(ProviderConfigRepository repository, PromptCacheMetrics promptCacheMetrics) {
         this.repository = repository;
+        this.promptCacheMetrics = promptCacheMetrics;
     }
 
     @GetMapping
@@ -26,6 +30,11 @@ public class ProviderController {
                 .toList();
     }
 
+    @GetMapping("/cache-stats")
+    public List<PromptCacheStats> cacheStats() {
+        return promptCacheMetrics.stats();
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public ProviderResponse create(@RequestBody CreateProviderRequest request) {
@@ -35,7 +44,8 @@ public class ProviderController {
                 request.type(),
                 request.apiKey(),
                 request.baseUrl(),
-                request.model()
+                request.model(),
+                request.maxContextTokens()
         );
         return ProviderResponse.from(repository.save(config));
     }
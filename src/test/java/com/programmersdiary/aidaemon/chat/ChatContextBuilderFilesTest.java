@@ -3,6 +3,7 @@ package com.programmersdiary.aidaemon.chat;
 import com.programmersdiary.aidaemon.bot.BotService;
 import com.programmersdiary.aidaemon.files.FileAttachment;
 import com.programmersdiary.aidaemon.files.FileStorageService;
+import com.programmersdiary.aidaemon.skills.MemoryIndex;
 import com.programmersdiary.aidaemon.skills.SkillsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -33,7 +34,7 @@ class ChatContextBuilderFilesTest {
 
         var botService = mock(BotService.class);
         var skillsService = mock(SkillsService.class);
-        when(skillsService.readMemory()).thenReturn(Map.of("key", "value"));
+        when(skillsService.memoryIndex()).thenReturn(MemoryIndex.of(Map.of("key", "value")));
         when(botService.loadSoul(any())).thenReturn(null);
 
         builder = new ChatContextBuilder(botService, skillsService, fileStorageService);
@@ -62,6 +63,19 @@ class ChatContextBuilderFilesTest {
         assertTrue(lastMsg.getText().contains("public class Foo {}"));
     }
 
+    @Test
+    void buildMessages_withSeveralFiles_keepsAttachmentOrder() throws IOException {
+        var first = fileStorageService.store("conv-1", "a.txt", "text/plain", "first file".getBytes());
+        var second = fileStorageService.store("conv-1", "b.txt", "text/plain", "second file".getBytes());
+        var third = fileStorageService.store("conv-1", "c.txt", "text/plain", "third file".getBytes());
+        var messages = List.of(ChatMessage.ofWithFiles("user", "compare", List.of(first, second, third)));
+
+        var text = ((UserMessage) builder.buildMessages(messages, null, 0, "sys", null, null).getLast()).getText();
+
+        assertTrue(text.indexOf("first file") < text.indexOf("second file"));
+        assertTrue(text.indexOf("second file") < text.indexOf("third file"));
+    }
+
     @Test
     void buildMessages_withImageFile_includesMediaInUserMessage() throws IOException {
         var pngBytes = new byte[]{(byte)0x89, 0x50, 0x4E, 0x47}; // PNG header
@@ -74,6 +88,21 @@ class ChatContextBuilderFilesTest {
         assertFalse(lastMsg.getMedia().isEmpty());
     }
 
+    @Test
+    void buildMessages_withTurnNote_keepsNoteAndMediaInCurrentUserMessage() throws IOException {
+        var attachment = fileStorageService.store("conv-1", "photo.png", "image/png", new byte[]{(byte) 0x89, 0x50});
+        var messages = List.of(ChatMessage.of("user", "hi"), ChatMessage.of("assistant", "hello"),
+                ChatMessage.ofWithFiles("user", "describe", List.of(attachment)));
+
+        var result = builder.buildMessages(messages, null, 10000, "sys", null, null);
+
+        var lastMsg = (UserMessage) result.getLast();
+        assertTrue(lastMsg.getText().startsWith("<turn-context>\nThis conversation has 3 messages."));
+        assertTrue(lastMsg.getText().contains("</turn-context>\n\ndescribe"));
+        assertFalse(lastMsg.getMedia().isEmpty());
+        assertTrue(result.subList(0, result.size() - 1).stream().noneMatch(m -> m.getText().contains("turn-context")));
+    }
+
     @Test
     void buildMessages_withFileInHistory_appendsFileReferencesAsText() throws IOException {
         var attachment = fileStorageService.store("conv-1", "data.csv", "text/csv", "a,b\n1,2".getBytes());
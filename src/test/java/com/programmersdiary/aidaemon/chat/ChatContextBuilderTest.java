@@ -0,0 +1,156 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.bot.BotService;
+import com.programmersdiary.aidaemon.skills.MemoryIndex;
+import com.programmersdiary.aidaemon.skills.SkillsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatContextBuilderTest {
+
+    private ChatContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        var botService = mock(BotService.class);
+        var skillsService = mock(SkillsService.class);
+        when(skillsService.memoryIndex()).thenReturn(MemoryIndex.of(Map.of("key", "value")));
+        builder = new ChatContextBuilder(botService, skillsService);
+    }
+
+    private static List<Message> history(List<Message> prompt) {
+        // system instructions, conversation note, memory come first; the current message with the turn note is last
+        return prompt.subList(3, prompt.size() - 1);
+    }
+
+    @Test
+    void buildMessages_reusesConvertedHistoryOfEarlierTurns() {
+        var messages = new ArrayList<>(List.of(
+                ChatMessage.of("user", "hello"),
+                ChatMessage.of("botA", "{\"parts\":[{\"type\":\"answer\",\"content\":\"hi\"}]}"),
+                ChatMessage.of("user", "how are you")));
+        var first = history(builder.buildMessages(messages, "botA", 10_000, "sys", null, "c1"));
+
+        messages.add(ChatMessage.of("tool", "ignored"));
+        messages.add(ChatMessage.of("botA", "fine"));
+        messages.add(ChatMessage.of("user", "good"));
+        var second = history(builder.buildMessages(messages, "botA", 10_000, "sys", null, "c1"));
+
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+        assertEquals("hi", ((AssistantMessage) second.get(1)).getText());
+        assertEquals(List.of("hello", "hi", "how are you", "fine", "fine"),
+                second.stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void buildMessages_rebuildsWhenHistoryDoesNotContinueCachedOne() {
+        builder.buildMessages(List.of(ChatMessage.of("user", "a"), ChatMessage.of("user", "b")),
+                null, 10_000, "sys", null, "c1");
+
+        var prompt = builder.buildMessages(List.of(ChatMessage.of("user", "x"), ChatMessage.of("user", "y")),
+                null, 10_000, "sys", null, "c1");
+
+        assertEquals(List.of("x", "x"), history(prompt).stream().map(Message::getText).toList());
+        assertTrue(((UserMessage) prompt.getLast()).getText().endsWith("</turn-context>\n\ny"));
+    }
+
+    @Test
+    void buildMessages_reportsIndexOfFirstMessageInContext() {
+        var messages = List.of(ChatMessage.of("user", "aaaa"), ChatMessage.of("user", "bb"),
+                ChatMessage.of("user", "cc"), ChatMessage.of("user", "now"));
+
+        var prompt = builder.buildMessages(messages, null, 4, "sys", null, "c1");
+
+        var note = (UserMessage) prompt.getLast();
+        assertTrue(note.getText().contains("has 4 messages"));
+        assertTrue(note.getText().contains("from index 1"));
+    }
+
+    @Test
+    void buildMessages_withTokenBudget_trimsByConvertedTextTokens() {
+        var answer = "{\"parts\":[{\"type\":\"reasoning\",\"content\":\"long long long reasoning text\"},"
+                + "{\"type\":\"answer\",\"content\":\"ok\"}]}";
+        var messages = List.of(ChatMessage.of("user", "first question"), ChatMessage.of("botA", answer),
+                ChatMessage.of("user", "next"));
+
+        var prompt = builder.buildMessages(messages, "botA", ContextBudget.tokens(1, HeuristicTokenizer.INSTANCE),
+                "sys", null, "c1");
+
+        assertTrue(prompt.getLast().getText().contains("from index 1"));
+        assertEquals(List.of("ok", "ok"), history(prompt).stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void buildMessages_injectsSummaryOfDroppedMessagesAndHandsNewOnesToSummarizer() {
+        var summarizer = mock(HistorySummarizer.class);
+        var skillsService = mock(SkillsService.class);
+        when(skillsService.memoryIndex()).thenReturn(MemoryIndex.of(Map.of("key", "value")));
+        var summarizing = new ChatContextBuilder(mock(BotService.class), skillsService, null, summarizer);
+        when(summarizer.summaryFor("c1")).thenReturn(new HistorySummary("talked about aaaa", 1, 1000L));
+        var messages = List.of(ChatMessage.of("user", "aaaa"), ChatMessage.of("user", "bbbb"),
+                ChatMessage.of("user", "cc"), ChatMessage.of("user", "now"));
+
+        var prompt = summarizing.buildMessages(messages, null, 2, "sys", null, "c1");
+        summarizing.summarizeDropped("c1", null, "p1");
+
+        assertEquals("Summary of conversation messages 0 to 0:\ntalked about aaaa", prompt.get(3).getText());
+        var note = prompt.getLast().getText();
+        assertTrue(note.contains("from index 2"));
+        assertTrue(note.contains("messages 1 to 1, which are not summarized yet"));
+        verify(summarizer).summarizeAsync("c1", "p1", messages.subList(0, 2));
+    }
+
+    @Test
+    void buildMessages_keepsPrefixStableAcrossSendersAndTurns() {
+        var skillsService = mock(SkillsService.class);
+        var memory = new LinkedHashMap<String, String>();
+        memory.put("zeta", "last");
+        memory.put("alpha", "first");
+        when(skillsService.memoryIndex()).thenReturn(MemoryIndex.of(memory));
+        var stable = new ChatContextBuilder(mock(BotService.class), skillsService);
+        var messages = new ArrayList<>(List.of(ChatMessage.of("user", "hello"), ChatMessage.of("botB", "hi")));
+
+        var first = stable.buildMessages(messages, "botA", 10_000, "sys", "botB", "c1");
+        messages.add(ChatMessage.of("user", "next"));
+        var second = stable.buildMessages(messages, "botA", 10_000, "sys", "user", "c1");
+
+        assertEquals(List.of("alpha: first", "zeta: last"), List.of(first.get(2).getText(), first.get(3).getText()));
+        var prefix = first.subList(0, first.size() - 2).stream().map(Message::getText).toList();
+        assertEquals(prefix, second.subList(0, prefix.size()).stream().map(Message::getText).toList());
+        assertTrue(first.getLast().getText().contains("triggered by bot \"botB\""));
+        assertTrue(first.stream().filter(m -> m instanceof SystemMessage).noneMatch(m -> m.getText().contains("botB")));
+    }
+
+    @Test
+    void buildMessages_narrowsLargeMemoryToRelevantEntriesInTurnNote() {
+        var skillsService = mock(SkillsService.class);
+        when(skillsService.memoryIndex()).thenReturn(MemoryIndex.of(Map.of(
+                "deploy target", "staging cluster", "coffee", "flat white", "editor", "neovim")));
+        var narrowing = new ChatContextBuilder(mock(BotService.class), skillsService, null, null,
+                new MemoryBudget(2, 1000));
+
+        var prompt = narrowing.buildMessages(List.of(ChatMessage.of("user", "deploy it please")),
+                null, 10_000, "sys", null, "c1");
+
+        assertEquals(3, prompt.size());
+        assertTrue(prompt.stream().filter(m -> m instanceof SystemMessage).noneMatch(m -> m.getText().contains("coffee")));
+        var note = ((UserMessage) prompt.getLast()).getText();
+        assertTrue(note.startsWith("<turn-context>\nMemory has 3 entries"));
+        assertTrue(note.endsWith("</turn-context>\n\ndeploy it please"));
+        assertTrue(note.contains("deploy target: staging cluster"));
+        assertFalse(note.contains("coffee"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.bot.Bot;
+import com.programmersdiary.aidaemon.bot.BotDefinition;
+import com.programmersdiary.aidaemon.bot.BotService;
+import com.programmersdiary.aidaemon.files.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ConcurrentConversationWritesTest {
+
+    private static final int CONVERSATIONS = 300;
+    private static final int TOOL_MESSAGES_PER_REPLY = 3;
+    private static final List<String> BOTS = List.of("botA", "botB");
+
+    @TempDir
+    Path tempDir;
+
+    private ConversationRepository repository;
+    private ConversationService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "batched", 5, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        var botService = mock(BotService.class);
+        when(botService.listBots()).thenReturn(BOTS.stream().map(BotDefinition::new).toList());
+        for (var botName : BOTS) {
+            var bot = mock(Bot.class);
+            when(bot.chat(any(), any(), any(), any())).thenAnswer(inv -> {
+                String conversationId = inv.getArgument(2);
+                repository.addMessage(conversationId, ChatMessage.of(botName, "reply from " + botName));
+                var toolMessages = new ArrayList<ChatMessage>();
+                for (int i = 0; i < TOOL_MESSAGES_PER_REPLY; i++) {
+                    toolMessages.add(ChatMessage.of("tool", botName + " tool " + i));
+                }
+                return new ChatResult("reply", null, null, toolMessages);
+            });
+            when(botService.getBot(botName)).thenReturn(bot);
+        }
+        service = new ConversationService(repository, botService, mock(FileStorageService.class));
+    }
+
+    @Test
+    void triggerBotReplyAsync_acrossManyConversations_losesNoMessages() throws Exception {
+        var ids = new ArrayList<String>();
+        for (int i = 0; i < CONVERSATIONS; i++) {
+            var conv = service.createConversation("conv " + i, "provider1", List.of("user", "botA", "botB"));
+            repository.addMessage(conv.id(), ChatMessage.of("user", "hello " + i));
+            ids.add(conv.id());
+        }
+
+        for (var id : ids) {
+            for (var botName : BOTS) {
+                service.triggerBotReplyAsync(id, botName);
+            }
+        }
+
+        int expected = 1 + BOTS.size() * (1 + TOOL_MESSAGES_PER_REPLY);
+        var deadline = System.currentTimeMillis() + 20_000;
+        while (System.currentTimeMillis() < deadline && !allHaveSize(repository, ids, expected)) {
+            Thread.sleep(50);
+        }
+        assertTrue(allHaveSize(repository, ids, expected), "in-memory conversations lost messages");
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        for (var id : ids) {
+            var messages = reloaded.findById(id).orElseThrow().messages();
+            assertEquals(expected, messages.size(), "persisted message count for " + id);
+            assertEquals("user", messages.get(0).participant());
+        }
+    }
+
+    private static boolean allHaveSize(ConversationRepository repository, List<String> ids, int expected) {
+        return ids.stream().allMatch(id ->
+                repository.findSnapshotById(id).orElseThrow().messages().size() == expected);
+    }
+}
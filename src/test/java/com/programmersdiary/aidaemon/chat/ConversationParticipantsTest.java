@@ -107,6 +107,19 @@ class ConversationParticipantsTest {
         assertTrue(botAResults.stream().noneMatch(c -> c.id().equals(botBConv.id())));
     }
 
+    @Test
+    void findAllForParticipant_followsAddedParticipantsAndDeletes() {
+        var conv = service.createConversation("Growing", "p1", List.of("user", "botA"));
+        assertTrue(repository.findAllForParticipant("botC").isEmpty());
+
+        service.addParticipant(conv.id(), "botC");
+        assertEquals(List.of(conv.id()), repository.findAllForParticipant("botC").stream().map(Conversation::id).toList());
+
+        repository.deleteById(conv.id());
+        assertTrue(repository.findAllForParticipant("botC").isEmpty());
+        assertTrue(repository.findAllForParticipant("user").isEmpty());
+    }
+
     @Test
     void createConversation_withBlankName_throws() {
         assertThrows(IllegalArgumentException.class,
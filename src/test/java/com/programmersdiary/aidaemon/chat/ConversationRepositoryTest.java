@@ -0,0 +1,526 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Conversation newConversation(String id) {
+        return new Conversation(id, "test", "p1", new ArrayList<>(), 1000L, List.of("user", "botA"));
+    }
+
+    private Path messagesDir(String id) {
+        return tempDir.resolve("conversations").resolve(id).resolve(ConversationRepository.MESSAGES_DIR);
+    }
+
+    @Test
+    void addMessage_appendsToSegmentLogAndSurvivesReload() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+
+        repository.addMessage("c1", ChatMessage.of("user", "hello"));
+        repository.addMessage("c1", ChatMessage.of("botA", "hi"));
+
+        var convDir = tempDir.resolve("conversations").resolve("c1");
+        assertTrue(Files.exists(convDir.resolve(ConversationRepository.HEADER_FILE)));
+        assertFalse(Files.exists(convDir.resolve(ConversationRepository.LEGACY_FILE)));
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        var conv = reloaded.findById("c1").orElseThrow();
+        assertEquals(List.of("hello", "hi"), conv.messages().stream().map(ChatMessage::content).toList());
+        assertEquals(List.of("user", "botA"), conv.participants());
+    }
+
+    @Test
+    void save_withExistingMessages_onlyAppendsUnsavedTail() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        var conv = newConversation("c1");
+        conv.messages().add(ChatMessage.of("user", "one"));
+        repository.save(conv);
+        conv.messages().add(ChatMessage.of("user", "two"));
+        repository.save(conv);
+        repository.save(conv);
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(List.of("one", "two"),
+                reloaded.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList());
+    }
+
+    @Test
+    void save_withStaleMessageList_keepsFullHistoryInCacheAndIndex() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.addMessage("c1", new ChatMessage("user", "one", 2000L, List.of()));
+        repository.addMessage("c1", new ChatMessage("botA", "two", 3000L, List.of()));
+
+        var saved = repository.save(new Conversation("c1", "renamed", "p1",
+                new ArrayList<>(List.of(new ChatMessage("user", "one", 2000L, List.of()))), 1000L,
+                List.of("user", "botA")));
+
+        assertEquals(List.of("one", "two"), saved.messages().stream().map(ChatMessage::content).toList());
+        var found = repository.findById("c1").orElseThrow();
+        assertEquals("renamed", found.name());
+        assertEquals(List.of("one", "two"), found.messages().stream().map(ChatMessage::content).toList());
+        var summary = repository.findSummaries(null).getFirst();
+        assertEquals(3000L, summary.lastMessageAt());
+    }
+
+    @Test
+    void segments_rollAndCompactWithoutLosingMessages() throws Exception {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(64, 2, 256, 100_000, 1000, "sync", 0, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+
+        for (int i = 0; i < 20; i++) {
+            repository.addMessage("c1", ChatMessage.of("user", "message number " + i));
+        }
+        repository.shutdown();
+        Thread.sleep(200);
+
+        try (var files = Files.list(messagesDir("c1"))) {
+            assertTrue(files.count() < 20, "sealed segments should have been compacted");
+        }
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        var contents = reloaded.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList();
+        assertEquals(20, contents.size());
+        assertEquals("message number 0", contents.get(0));
+        assertEquals("message number 19", contents.get(19));
+    }
+
+    @Test
+    void load_withTornTailRecord_keepsValidPrefixAndTruncates() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.addMessage("c1", ChatMessage.of("user", "kept"));
+
+        Path segment;
+        try (var files = Files.list(messagesDir("c1"))) {
+            segment = files.findFirst().orElseThrow();
+        }
+        var validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(1, reloaded.findById("c1").orElseThrow().messages().size());
+        assertEquals(validSize, Files.size(segment));
+
+        reloaded.addMessage("c1", ChatMessage.of("user", "after recovery"));
+        var again = new ConversationRepository(tempDir.toString());
+        again.load();
+        assertEquals(List.of("kept", "after recovery"),
+                again.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList());
+    }
+
+    @Test
+    void load_afterCompactionStoppedBeforeCleanup_dropsAlreadyMergedSegments() throws Exception {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(64, 100, 256, 100_000, 1000, "sync", 0, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+        for (int i = 0; i < 6; i++) {
+            repository.addMessage("c1", ChatMessage.of("user", "message number " + i));
+        }
+        List<Path> segments;
+        try (var files = Files.list(messagesDir("c1"))) {
+            segments = files.sorted().toList();
+        }
+        assertTrue(segments.size() >= 3);
+        try (var out = Files.newOutputStream(segments.get(0), StandardOpenOption.APPEND)) {
+            Files.copy(segments.get(1), out);
+        }
+        Files.writeString(messagesDir("c1").resolve("00000000000000000000.seg.tmp"), "partial");
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        var contents = reloaded.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList();
+        assertEquals(6, contents.size());
+        assertEquals("message number 5", contents.get(5));
+        assertFalse(Files.exists(segments.get(1)));
+        assertFalse(Files.exists(messagesDir("c1").resolve("00000000000000000000.seg.tmp")));
+    }
+
+    @Test
+    void load_migratesLegacyConversationJsonWithMessages() throws IOException {
+        var legacy = """
+                {
+                  "id": "legacy",
+                  "name": "old",
+                  "providerId": "p1",
+                  "messages": [
+                    {"participant": "user", "content": "first", "timestampMillis": 1, "files": []},
+                    {"participant": "botA", "content": "second", "timestampMillis": 2, "files": []}
+                  ],
+                  "createdAtMillis": 1000,
+                  "participants": ["user", "botA"]
+                }
+                """;
+        var convDir = tempDir.resolve("conversations").resolve("legacy");
+        Files.createDirectories(convDir);
+        Files.writeString(convDir.resolve(ConversationRepository.LEGACY_FILE), legacy);
+
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+
+        assertFalse(Files.exists(convDir.resolve(ConversationRepository.LEGACY_FILE)));
+        assertTrue(Files.exists(convDir.resolve(ConversationRepository.HEADER_FILE)));
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        var conv = reloaded.findById("legacy").orElseThrow();
+        assertEquals("old", conv.name());
+        assertEquals(List.of("first", "second"), conv.messages().stream().map(ChatMessage::content).toList());
+    }
+
+    @Test
+    void load_readsIndexOnlyAndLoadsMessagesOnDemand() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.addMessage("c1", ChatMessage.of("user", "hello"));
+        repository.shutdown();
+        assertTrue(Files.exists(tempDir.resolve("conversations").resolve(ConversationRepository.INDEX_FILE)));
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(0, reloaded.cachedConversationCount());
+        var entry = reloaded.findEntriesForParticipant("botA").get(0);
+        assertEquals("c1", entry.id());
+        assertEquals(1, entry.messageCount());
+
+        assertEquals("hello", reloaded.findById("c1").orElseThrow().messages().get(0).content());
+        assertEquals(1, reloaded.cachedConversationCount());
+    }
+
+    @Test
+    void cache_evictsLeastRecentlyUsedAndKeepsWritesOfEvictedConversations() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 2, 100_000, 1000, "sync", 0, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        for (var id : List.of("c1", "c2", "c3")) {
+            repository.save(newConversation(id));
+        }
+        assertEquals(2, repository.cachedConversationCount());
+
+        repository.addMessage("c1", ChatMessage.of("user", "written while evicted"));
+
+        var c1 = repository.findById("c1").orElseThrow();
+        assertEquals(List.of("written while evicted"), c1.messages().stream().map(ChatMessage::content).toList());
+        assertEquals(2, repository.cachedConversationCount());
+    }
+
+    @Test
+    void cache_boundedByMessageCount() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 100, 3, 1000, "sync", 0, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.save(newConversation("c2"));
+        for (int i = 0; i < 3; i++) {
+            repository.addMessage("c1", ChatMessage.of("user", "m" + i));
+        }
+        repository.addMessage("c2", ChatMessage.of("user", "x"));
+
+        assertEquals(1, repository.cachedConversationCount());
+        assertEquals(3, repository.findById("c1").orElseThrow().messages().size());
+    }
+
+    @Test
+    void asyncDurability_buffersWritesUntilWindowOrShutdown() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "async", 60_000, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+        for (int i = 0; i < 10; i++) {
+            repository.addMessage("c1", ChatMessage.of("user", "m" + i));
+        }
+
+        assertFalse(Files.exists(messagesDir("c1")), "writes should still be buffered");
+        assertEquals(10, repository.findSnapshotById("c1").orElseThrow().messages().size());
+
+        repository.shutdown();
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(10, reloaded.findById("c1").orElseThrow().messages().size());
+    }
+
+    @Test
+    void asyncDurability_appendAfterShutdownIsWrittenImmediately() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "async", 60_000, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.addMessage("c1", ChatMessage.of("user", "before"));
+        repository.shutdown();
+
+        repository.addMessage("c1", ChatMessage.of("user", "after"));
+        repository.addMessage("c1", ChatMessage.of("user", "later"));
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(List.of("before", "after", "later"),
+                reloaded.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList());
+    }
+
+    @Test
+    void deleteById_withinWriteWindow_dropsPendingBatchAndLeavesNoDirectory() throws Exception {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "batched", 200, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+        var errors = new ArrayList<Throwable>();
+        var writer = new Thread(() -> {
+            try {
+                repository.addMessage("c1", ChatMessage.of("user", "pending"));
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+
+        assertTrue(repository.deleteById("c1"));
+        writer.join();
+        Thread.sleep(300);
+
+        assertEquals(List.of(), errors);
+        assertFalse(Files.exists(tempDir.resolve("conversations").resolve("c1")));
+        repository.shutdown();
+    }
+
+    @Test
+    void addMessage_leavesSavedListsAndSnapshotsUnchanged() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        var saved = newConversation("c1");
+        repository.save(saved);
+        var snapshot = repository.findSnapshotById("c1").orElseThrow();
+
+        repository.addMessage("c1", ChatMessage.of("user", "hi"));
+
+        assertEquals(List.of(), saved.messages());
+        assertEquals(List.of(), snapshot.messages());
+        assertEquals(1, repository.findSnapshotById("c1").orElseThrow().messages().size());
+        repository.shutdown();
+    }
+
+    @Test
+    void batchedDurability_concurrentWritersAreAllPersistedOnReturn() throws Exception {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "batched", 20, "smile", 30_000, 0, 3_600_000));
+        repository.load();
+        repository.save(newConversation("c1"));
+
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 5; i++) {
+                    repository.addMessage("c1", ChatMessage.of("user", writer + "-" + i));
+                }
+            }));
+        }
+        for (var thread : threads) thread.join();
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(40, reloaded.findById("c1").orElseThrow().messages().size());
+    }
+
+    @Test
+    void findSummaries_servesCountAndPreviewFromIndexAcrossReload() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        for (int i = 0; i < 6; i++) {
+            repository.addMessage("c1", new ChatMessage("user", "m" + i, 2000L + i, List.of()));
+        }
+        repository.shutdown();
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        var summary = reloaded.findSummaries("botA").get(0);
+        assertEquals(6, summary.messageCount());
+        assertEquals(2005L, summary.lastMessageAt());
+        assertEquals(List.of("m2", "m3", "m4", "m5"), summary.preview().stream().map(ChatMessage::content).toList());
+        assertEquals(0, reloaded.cachedConversationCount(), "summaries must not load message history");
+    }
+
+    @Test
+    void findMessages_returnsRequestedRange() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        for (int i = 0; i < 5; i++) {
+            repository.addMessage("c1", ChatMessage.of("user", "m" + i));
+        }
+
+        var page = repository.findMessages("c1", 1, 2).orElseThrow();
+        assertEquals(1, page.from());
+        assertEquals(5, page.total());
+        assertEquals(List.of("m1", "m2"), page.messages().stream().map(ChatMessage::content).toList());
+        assertTrue(repository.findMessages("c1", 10, 2).orElseThrow().messages().isEmpty());
+        assertTrue(repository.findMessages("missing", 0, 2).isEmpty());
+    }
+
+    @Test
+    void findHistory_pagesNonToolMessagesAsDisplayText() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.addMessage("c1", ChatMessage.of("user", "first"));
+        repository.addMessage("c1", ChatMessage.of("tool", "tool output"));
+        repository.addMessage("c1", ChatMessage.of("botA",
+                "{\"parts\":[{\"type\":\"reasoning\",\"content\":\"hmm\"},{\"type\":\"answer\",\"content\":\"second\"}]}"));
+        repository.addMessage("c1", ChatMessage.of("user", "third"));
+
+        var page = repository.findHistory("c1", 0, Integer.MAX_VALUE, 11).orElseThrow();
+        assertEquals(3, page.total());
+        assertEquals(2, page.to());
+        assertEquals(List.of("first", "second"), page.messages().stream().map(HistoryPage.Entry::text).toList());
+
+        repository.addMessage("c1", ChatMessage.of("user", "fourth is long"));
+        var next = repository.findHistory("c1", page.to(), Integer.MAX_VALUE, 3).orElseThrow();
+        assertEquals(4, next.total());
+        assertEquals(List.of("thi…"), next.messages().stream().map(HistoryPage.Entry::text).toList());
+        assertTrue(repository.findHistory("missing", 0, 1, 0).isEmpty());
+    }
+
+    @Test
+    void search_ranksMatchesAndRespectsParticipants() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.save(new Conversation("c2", "other", "p1", new ArrayList<>(), 1000L, List.of("user", "botB")));
+        repository.addMessage("c1", ChatMessage.of("user", "the deployment failed again"));
+        repository.addMessage("c1", ChatMessage.of("botA", "deployment deployment rollback"));
+        repository.addMessage("c1", ChatMessage.of("user", "unrelated"));
+        repository.addMessage("c2", ChatMessage.of("user", "deployment of botB"));
+
+        var hits = repository.search("Deployment", "botA", null, 10);
+        assertEquals(List.of(1, 0), hits.stream().map(SearchHit::messageIndex).toList());
+        assertEquals("deployment deployment rollback", hits.get(0).snippet());
+        assertEquals(3, repository.search("deployment", null, null, 10).size());
+        assertEquals(List.of("c2"), repository.search("deployment", null, "c2", 10).stream()
+                .map(SearchHit::conversationId).toList());
+    }
+
+    @Test
+    void search_indexSurvivesReloadAndForgetsDeletedConversations() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.save(newConversation("c2"));
+        repository.addMessage("c1", ChatMessage.of("user", "invoice number 42"));
+        repository.addMessage("c2", ChatMessage.of("user", "invoice draft"));
+        repository.deleteById("c2");
+        repository.shutdown();
+        assertTrue(Files.exists(tempDir.resolve("conversations").resolve(ConversationRepository.SEARCH_INDEX_FILE)));
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        reloaded.addMessage("c1", ChatMessage.of("user", "second invoice"));
+        var hits = reloaded.search("invoice", null, null, 10);
+        assertEquals(List.of("c1", "c1"), hits.stream().map(SearchHit::conversationId).toList());
+        reloaded.shutdown();
+    }
+
+    @Test
+    void archiveIdleConversations_compressesLogAndRehydratesOnAccess() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "sync", 0, "smile", 30_000,
+                        1, 3_600_000));
+        repository.load();
+        repository.save(new Conversation("c1", "test", "p1", new ArrayList<>(), 1000L, List.of("user")));
+        repository.addMessage("c1", new ChatMessage("user", "old", 1000L, List.of()));
+        repository.save(new Conversation("c2", "test", "p1", new ArrayList<>(), 1000L, List.of("user")));
+        repository.addMessage("c2", new ChatMessage("user", "old", 1000L, List.of()));
+        repository.shutdown();
+
+        var reloaded = new ConversationRepository(tempDir.toString(),
+                new ConversationStorageConfig(4L * 1024 * 1024, 8, 256, 100_000, 1000, "sync", 0, "smile", 30_000,
+                        1, 3_600_000));
+        reloaded.load();
+        reloaded.findById("c2");
+        reloaded.archiveIdleConversations();
+
+        assertTrue(Files.exists(messagesDir("c1").resolve("archive.gz")));
+        assertFalse(Files.exists(messagesDir("c2").resolve("archive.gz")), "cached conversations stay hot");
+        assertEquals(1, reloaded.stats().coldConversations());
+
+        reloaded.addMessage("c1", ChatMessage.of("user", "new"));
+        assertEquals(List.of("old", "new"),
+                reloaded.findById("c1").orElseThrow().messages().stream().map(ChatMessage::content).toList());
+        var stats = reloaded.stats();
+        assertEquals(0, stats.coldConversations());
+        assertEquals(1, stats.rehydrations());
+        assertFalse(Files.exists(messagesDir("c1").resolve("archive.gz")));
+        reloaded.shutdown();
+    }
+
+    @Test
+    void archive_interruptedSegmentDeleteRestoresFullLogFromArchive() throws IOException {
+        var dir = messagesDir("c1");
+        var log = new SegmentedMessageLog(dir, MessageCodec.named("smile"), 1);
+        log.append(ChatMessage.of("user", "one"));
+        log.append(ChatMessage.of("user", "two"));
+        log.append(ChatMessage.of("user", "three"));
+        List<Path> segments;
+        try (var stream = Files.list(dir)) {
+            segments = stream.sorted().toList();
+        }
+        assertEquals(3, segments.size());
+        var second = Files.readAllBytes(segments.get(1));
+        var third = Files.readAllBytes(segments.get(2));
+
+        assertTrue(log.archive());
+        // A crash after deleting only the first segment leaves the archive next to the later segments.
+        Files.write(segments.get(1), second);
+        Files.write(segments.get(2), third);
+
+        var reopened = new SegmentedMessageLog(dir, MessageCodec.named("smile"), 1);
+        assertEquals(List.of("one", "two", "three"),
+                reopened.readAll().stream().map(ChatMessage::content).toList());
+        assertEquals(3, reopened.size());
+        assertFalse(Files.exists(dir.resolve("archive.gz")));
+    }
+
+    @Test
+    void historySummary_persistsAndIsNotRecreatedAfterDelete() throws IOException {
+        var repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(newConversation("c1"));
+        repository.saveHistorySummary("c1", new HistorySummary("we agreed on plan B", 12, 1000L));
+        repository.shutdown();
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals(new HistorySummary("we agreed on plan B", 12, 1000L),
+                reloaded.findHistorySummary("c1").orElseThrow());
+        reloaded.deleteById("c1");
+        reloaded.saveHistorySummary("c1", new HistorySummary("late", 20, 2000L));
+
+        assertTrue(reloaded.findHistorySummary("c1").isEmpty());
+        assertFalse(Files.exists(tempDir.resolve("conversations").resolve("c1")));
+        reloaded.shutdown();
+    }
+}
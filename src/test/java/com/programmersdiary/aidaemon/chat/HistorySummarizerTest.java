@@ -0,0 +1,99 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.programmersdiary.aidaemon.provider.ChatModelFactory;
+import com.programmersdiary.aidaemon.provider.ProviderConfig;
+import com.programmersdiary.aidaemon.provider.ProviderConfigRepository;
+import com.programmersdiary.aidaemon.provider.ProviderType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistorySummarizerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Prompt> prompts = Collections.synchronizedList(new ArrayList<>());
+    private ConversationRepository repository;
+    private HistorySummarizer summarizer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = new ConversationRepository(tempDir.toString());
+        repository.load();
+        repository.save(new Conversation("c1", "test", "p1", new ArrayList<>(), 1000L, List.of("user", "botA")));
+        var providers = new ProviderConfigRepository(tempDir.toString());
+        providers.save(new ProviderConfig("p1", "OpenAI", ProviderType.OPENAI, "key", "http://localhost:1", "m", null));
+        var chatModelFactory = new ChatModelFactory() {
+            @Override
+            public ChatModel create(ProviderConfig config) {
+                return prompt -> {
+                    prompts.add(prompt);
+                    return new ChatResponse(List.of(new Generation(new AssistantMessage("summary " + prompts.size()))));
+                };
+            }
+        };
+        summarizer = new HistorySummarizer(repository, providers, chatModelFactory, true, 10, 4000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        summarizer.shutdown();
+        repository.shutdown();
+    }
+
+    private static List<ChatMessage> dropped(int count) {
+        return IntStream.range(0, count).mapToObj(i -> ChatMessage.of("user", "message " + i)).toList();
+    }
+
+    private HistorySummary awaitSummary(int coveredMessages) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            var summary = summarizer.summaryFor("c1");
+            if (summary != null && summary.coveredMessages() == coveredMessages) return summary;
+            Thread.sleep(10);
+        }
+        return fail("no summary covering " + coveredMessages + " messages");
+    }
+
+    @Test
+    void summarizeAsync_foldsDroppedMessagesIntoPreviousSummary() throws InterruptedException, IOException {
+        summarizer.summarizeAsync("c1", "p1", dropped(9));
+        assertNull(summarizer.summaryFor("c1"), "fewer than the minimum of new messages");
+
+        summarizer.summarizeAsync("c1", "p1", dropped(12));
+        assertEquals("summary 1", awaitSummary(12).text());
+        var firstRequest = prompts.getFirst().getUserMessage().getText();
+        assertTrue(firstRequest.contains("[0] user: message 0"));
+        assertTrue(firstRequest.contains("[11] user: message 11"));
+
+        summarizer.summarizeAsync("c1", "p1", dropped(15));
+        assertEquals(1, prompts.size(), "only 3 messages are new");
+
+        summarizer.summarizeAsync("c1", "p1", dropped(22));
+        assertEquals("summary 2", awaitSummary(22).text());
+        var secondRequest = prompts.get(1).getUserMessage().getText();
+        assertTrue(secondRequest.startsWith("Previous summary (messages 0 to 11):\nsummary 1"));
+        assertFalse(secondRequest.contains("[11] "));
+        assertTrue(secondRequest.contains("[12] user: message 12"));
+
+        var reloaded = new ConversationRepository(tempDir.toString());
+        reloaded.load();
+        assertEquals("summary 2", reloaded.findHistorySummary("c1").orElseThrow().text());
+        reloaded.shutdown();
+    }
+}
@@ -0,0 +1,86 @@
+package com.programmersdiary.aidaemon.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.programmersdiary.aidaemon.files.FileAttachment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageCodecTest {
+
+    private final MessageCodec smile = MessageCodec.named("smile");
+    private final MessageCodec json = MessageCodec.named("json");
+
+    private static ChatMessage assistantReply() {
+        var parts = new ArrayList<StreamChunk>();
+        for (int i = 0; i < 20; i++) {
+            parts.add(new StreamChunk(StreamChunk.TYPE_REASONING, "thinking \"step\" " + i));
+            parts.add(new StreamChunk(StreamChunk.TYPE_TOOL, "{\"tool\":\"shell\",\"input\":\"ls -la\",\"output\":\"ok\"}"));
+            parts.add(new StreamChunk(StreamChunk.TYPE_ANSWER, "answer line " + i));
+        }
+        return new ChatMessage("botA", new ChatResult("answer", parts).assistantContent(), 42L,
+                List.of(new FileAttachment("f1", "a.png", "image/png")));
+    }
+
+    @Test
+    void roundTrip_preservesStructuredAndPlainContent() throws Exception {
+        var messages = List.of(
+                assistantReply(),
+                ChatMessage.of("user", "{\"user_parts\":[{\"type\":\"text\",\"text\":\"hi\"}]}"),
+                ChatMessage.of("user", "plain text"),
+                ChatMessage.of("user", "{\"parts\": [\"spaced\"]}"),
+                ChatMessage.of("user", "{\"parts\":[1], \"extra\":true}"),
+                ChatMessage.of("user", ""));
+        for (var codec : List.of(smile, json)) {
+            for (var message : messages) {
+                assertEquals(message, codec.decode(codec.encode(message)));
+            }
+        }
+    }
+
+    @Test
+    void structuredParts_areStoredAsOriginalString() throws Exception {
+        var stored = new ObjectMapper().readTree(json.encode(assistantReply()));
+        assertEquals(assistantReply().content(), stored.get("content").asText());
+        assertFalse(stored.has("parts"));
+    }
+
+    @Test
+    void decode_readsRecordsWrittenByAnyCodec() throws Exception {
+        var legacyRecord = new ObjectMapper().writeValueAsBytes(assistantReply());
+        assertEquals(assistantReply(), smile.decode(legacyRecord));
+        assertEquals(assistantReply(), json.decode(smile.encode(assistantReply())));
+    }
+
+    @Test
+    void smile_isSmallerThanLegacyJsonRecord() throws Exception {
+        var legacyBytes = new ObjectMapper().writeValueAsBytes(assistantReply()).length;
+        var smileBytes = smile.encode(assistantReply()).length;
+        assertTrue(smileBytes < legacyBytes * 0.8, "smile " + smileBytes + " vs legacy " + legacyBytes);
+    }
+
+    @Test
+    void parts_areReadFromStructuredAndLegacyStringContent() throws Exception {
+        var reply = smile.decode(smile.encode(assistantReply()));
+        assertEquals(60, reply.parts().size());
+        assertEquals(new MessagePart.Reasoning("thinking \"step\" 0"), reply.parts().get(0));
+        assertInstanceOf(MessagePart.Tool.class, reply.parts().get(1));
+        assertEquals(new MessagePart.Text("answer line 0"), reply.parts().get(2));
+        assertTrue(reply.plainText().startsWith("answer line 0 answer line 1"));
+
+        var userParts = ChatMessage.of("user", "{\"user_parts\":[{\"type\":\"text\",\"content\":\"see\"},"
+                + "{\"type\":\"file\",\"id\":\"f1\",\"name\":\"a.png\",\"mimeType\":\"image/png\"}]}");
+        assertEquals(List.of(new MessagePart.Text("see"),
+                new MessagePart.File(new FileAttachment("f1", "a.png", "image/png"))), userParts.parts());
+        assertEquals(List.of(new MessagePart.Text("{\"parts\": broken")),
+                ChatMessage.of("user", "{\"parts\": broken").parts());
+    }
+
+    @Test
+    void named_rejectsUnknownCodec() {
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.named("xml"));
+    }
+}
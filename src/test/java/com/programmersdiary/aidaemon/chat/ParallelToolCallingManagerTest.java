@@ -0,0 +1,175 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolCallingManagerTest {
+
+    private static ToolCallback sleepingTool(String name, long millis) {
+        var definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return name + " done";
+            }
+        };
+    }
+
+    private static ChatResponse toolCalls(String... names) {
+        var calls = new ArrayList<AssistantMessage.ToolCall>();
+        for (int i = 0; i < names.length; i++) {
+            calls.add(new AssistantMessage.ToolCall("call-" + i, "function", names[i], "{}"));
+        }
+        return toolCalls(calls);
+    }
+
+    private static ChatResponse toolCalls(List<AssistantMessage.ToolCall> calls) {
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(calls).build())));
+    }
+
+    @Test
+    void executeToolCalls_runsMcpCallsConcurrentlyAndKeepsCallOrder() {
+        var toolLog = Collections.synchronizedList(new ArrayList<ChatMessage>());
+        var chunks = Collections.synchronizedList(new ArrayList<StreamChunk>());
+        var tools = List.<ToolCallback>of(
+                new LoggingToolCallback(sleepingTool("slow", 400), toolLog, "a", chunks::add),
+                new LoggingToolCallback(sleepingTool("fast", 50), toolLog, "b", chunks::add),
+                new LoggingToolCallback(sleepingTool("local", 10), toolLog, null, chunks::add));
+        var prompt = new Prompt(List.of(new UserMessage("go")), ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+        var manager = new ParallelToolCallingManager(true, 4);
+
+        long start = System.nanoTime();
+        var result = manager.executeToolCalls(prompt, toolCalls("a_slow", "b_fast", "local", "a_slow"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 750, "took " + elapsedMillis + " ms");
+        var responses = ((ToolResponseMessage) result.conversationHistory().getLast()).getResponses();
+        assertEquals(List.of("call-0", "call-1", "call-2", "call-3"), responses.stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        assertEquals("fast done", responses.get(1).responseData());
+        assertEquals(List.of("[a > slow]", "[b > fast]", "[local]", "[a > slow]"),
+                toolLog.stream().map(m -> m.content().substring(0, m.content().indexOf('\n'))).toList());
+        assertEquals(toolLog.stream().map(ChatMessage::content).toList(), chunks.stream().map(StreamChunk::content).toList());
+    }
+
+    @Test
+    void executeToolCalls_limitsConcurrentCallsPerServer() {
+        var toolLog = Collections.synchronizedList(new ArrayList<ChatMessage>());
+        var tools = List.<ToolCallback>of(new LoggingToolCallback(sleepingTool("slow", 200), toolLog, "a"));
+        var prompt = new Prompt(List.of(new UserMessage("go")), ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+
+        long start = System.nanoTime();
+        new ParallelToolCallingManager(true, 1).executeToolCalls(prompt, toolCalls("a_slow", "a_slow"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 400, "took " + elapsedMillis + " ms");
+        assertEquals(2, toolLog.size());
+    }
+
+    @Test
+    void executeToolCalls_passesToolContextOfOptions() {
+        var seen = Collections.synchronizedList(new ArrayList<ToolContext>());
+        var definition = ToolDefinition.builder().name("ctx").description("ctx").inputSchema("{}").build();
+        var tool = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return call(toolInput, null);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                seen.add(toolContext);
+                return "ok";
+            }
+        };
+        var options = ToolCallingChatOptions.builder().toolCallbacks(List.of(tool)).toolContext(Map.of("user", "u1")).build();
+        var prompt = new Prompt(List.of(new UserMessage("go")), options);
+
+        new ParallelToolCallingManager(true, 4).executeToolCalls(prompt, toolCalls("ctx", "ctx"));
+
+        assertEquals(2, seen.size());
+        for (var context : seen) {
+            assertEquals("u1", context.getContext().get("user"));
+            assertTrue(context.getContext().containsKey(ToolContext.TOOL_CALL_HISTORY));
+        }
+    }
+
+    @Test
+    void executeToolCalls_keepsCallOrderForToolsCalledUnderTimeout() {
+        var toolLog = Collections.synchronizedList(new ArrayList<ChatMessage>());
+        var inner = new LoggingToolCallback(sleepingTool("inner", 10), toolLog);
+        var outerDefinition = ToolDefinition.builder().name("outer").description("outer").inputSchema("{}").build();
+        var outer = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return outerDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return inner.call(toolInput);
+            }
+        };
+        var tools = List.<ToolCallback>of(
+                new LoggingToolCallback(sleepingTool("slow", 300), toolLog, "a"),
+                new LoggingToolCallback(outer, toolLog, null, null, null, 5));
+        var prompt = new Prompt(List.of(new UserMessage("go")), ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+
+        new ParallelToolCallingManager(true, 4).executeToolCalls(prompt, toolCalls("a_slow", "outer"));
+
+        assertEquals(List.of("[a > slow]", "[inner]", "[outer]"),
+                toolLog.stream().map(m -> m.content().substring(0, m.content().indexOf('\n'))).toList());
+    }
+
+    @Test
+    void executeToolCalls_countsDiscoveredToolCallsAgainstServerLimit() {
+        var toolLog = Collections.synchronizedList(new ArrayList<ChatMessage>());
+        var slow = new LoggingToolCallback(sleepingTool("slow", 200), toolLog, "a");
+        var permits = new ServerCallPermits(true, 1);
+        var discovery = ToolRegistry.bind(new ToolDiscoveryTool(ToolRouter.Index.of(Map.of("a_slow", "slow")),
+                Map.of("a_slow", slow), permits));
+        var tools = new ArrayList<ToolCallback>(discovery);
+        tools.add(slow);
+        var prompt = new Prompt(List.of(new UserMessage("go")), ToolCallingChatOptions.builder().toolCallbacks(tools).build());
+        var calls = List.of(new AssistantMessage.ToolCall("call-0", "function", "a_slow", "{}"),
+                new AssistantMessage.ToolCall("call-1", "function", "callDiscoveredTool",
+                        "{\"name\":\"a_slow\",\"input\":\"{}\"}"));
+
+        long start = System.nanoTime();
+        new ParallelToolCallingManager(permits).executeToolCalls(prompt, toolCalls(calls));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= 400, "took " + elapsedMillis + " ms");
+        assertEquals(2, toolLog.size());
+    }
+}
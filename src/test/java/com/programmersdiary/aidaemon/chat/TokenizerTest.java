@@ -0,0 +1,59 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenizerTest {
+
+    private static Map<String, Integer> ranks(String... tokens) {
+        var ranks = new HashMap<String, Integer>();
+        for (int b = 0; b < 256; b++) {
+            ranks.put(String.valueOf((char) b), b);
+        }
+        for (var token : tokens) {
+            ranks.put(token, ranks.size());
+        }
+        return ranks;
+    }
+
+    @Test
+    void bpe_mergesByRankWithinPieces() {
+        var tokenizer = new BpeTokenizer(ranks("he", "ll", "hell", "hello", " w", " wo"));
+
+        assertEquals(1, tokenizer.countTokens("hello"));
+        assertEquals(5, tokenizer.countTokens("hello world"));
+        assertEquals(0, tokenizer.countTokens(""));
+    }
+
+    @Test
+    void heuristic_countsCjkPerCharacterAndWordsPerPiece() {
+        var tokenizer = HeuristicTokenizer.INSTANCE;
+
+        assertEquals(3, tokenizer.countTokens("hello big world"));
+        assertEquals(4, tokenizer.countTokens("你好世界"));
+        assertTrue(tokenizer.countTokens("aGVsbG8gd29ybGQhIGFuZCBtb3JlIGJhc2U2NA==") > 40 / 6);
+    }
+
+    @Test
+    void firstWithinBudget_keepsNewestItemsWithinTokenBudget() {
+        var texts = List.of("one two three", "four", "five six");
+
+        int start = ContextWindowTrimmer.firstWithinBudget(texts.size(),
+                i -> HeuristicTokenizer.INSTANCE.countTokens(texts.get(i)), 3);
+
+        assertEquals(1, start);
+    }
+
+    @Test
+    void bpe_mergesLowestRankFirstInLongPieces() {
+        var tokenizer = new BpeTokenizer(ranks("aa", "aaaa", "ab"));
+
+        assertEquals(2500, tokenizer.countTokens("a".repeat(10_000)));
+        assertEquals(2, tokenizer.countTokens("aaaaab"));
+    }
+}
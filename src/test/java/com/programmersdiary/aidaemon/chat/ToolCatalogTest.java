@@ -0,0 +1,72 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolCatalogTest {
+
+    private static ToolCallback tool(String name, String description) {
+        var definition = ToolDefinition.builder().name(name).description(description).inputSchema("{}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return name;
+            }
+        };
+    }
+
+    private static List<String> names(ToolCatalog catalog) {
+        return catalog.tools().stream().map(t -> t.getToolDefinition().name()).toList();
+    }
+
+    @Test
+    void add_keepsFirstToolOfEachName() {
+        var catalog = new ToolCatalog(0, 0);
+
+        assertTrue(catalog.add(tool("search", "built-in")));
+        assertFalse(catalog.add(tool("search", "from an MCP server")));
+        assertTrue(catalog.add(tool("github_search", "prefixed")));
+
+        assertEquals(List.of("search", "github_search"), names(catalog));
+        assertEquals("built-in", catalog.tools().get(0).getToolDefinition().description());
+        assertEquals(List.of("search"), catalog.omitted());
+        assertEquals("search".length() + "built-in".length() + 2 + "github_search".length() + "prefixed".length() + 2,
+                catalog.schemaChars());
+    }
+
+    @Test
+    void add_leavesOutToolsOverTheCaps() {
+        var byCount = new ToolCatalog(2, 0);
+        List.of("a1", "a2", "a3").forEach(name -> byCount.add(tool(name, "d")));
+        assertEquals(List.of("a1", "a2"), names(byCount));
+
+        var bySize = new ToolCatalog(0, 12);
+        bySize.add(tool("a1", "long description"));
+        bySize.add(tool("b1", "short"));
+        bySize.add(tool("c1", "x"));
+        assertEquals(List.of("b1"), names(bySize));
+        assertEquals(List.of("a1", "c1"), bySize.omitted());
+    }
+
+    @Test
+    void reserve_addsToolsWhateverTheCaps() {
+        var catalog = new ToolCatalog(2, 0);
+        catalog.add(tool("a1", "d"));
+        catalog.add(tool("a2", "d"));
+
+        assertTrue(catalog.reserve(tool("discoverTools", "d")));
+        assertFalse(catalog.reserve(tool("a1", "d")));
+        assertFalse(catalog.add(tool("a3", "d")));
+        assertEquals(List.of("a1", "a2", "discoverTools"), names(catalog));
+    }
+}
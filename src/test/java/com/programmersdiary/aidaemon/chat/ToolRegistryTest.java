@@ -0,0 +1,55 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolRegistryTest {
+
+    static class GreetingTools {
+        private final String conversationId;
+
+        GreetingTools(String conversationId) {
+            this.conversationId = conversationId;
+        }
+
+        @Tool(description = "Greets someone in this conversation")
+        public String greet(@ToolParam(description = "Who to greet") String name) {
+            return "Hello " + name + " from " + conversationId;
+        }
+
+        @Tool(description = "Names this conversation")
+        public String conversation() {
+            return conversationId;
+        }
+
+        public String notATool() {
+            return "";
+        }
+    }
+
+    private static List<ToolCallback> sorted(List<ToolCallback> callbacks) {
+        return callbacks.stream().sorted(Comparator.comparing(c -> c.getToolDefinition().name())).toList();
+    }
+
+    @Test
+    void bind_matchesToolCallbacksFromAndCallsTheBoundInstance() {
+        var expected = sorted(Arrays.asList(ToolCallbacks.from(new GreetingTools("c1"))));
+        var first = sorted(ToolRegistry.bind(new GreetingTools("c1")));
+        var second = sorted(ToolRegistry.bind(new GreetingTools("c2")));
+
+        assertEquals(expected.stream().map(ToolCallback::getToolDefinition).toList(),
+                first.stream().map(ToolCallback::getToolDefinition).toList());
+        assertSame(first.get(0).getToolDefinition(), second.get(0).getToolDefinition());
+        assertEquals("\"c1\"", first.get(0).call("{}"));
+        assertEquals("\"Hello Ada from c2\"", second.get(1).call("{\"name\":\"Ada\"}"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.programmersdiary.aidaemon.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolRouterTest {
+
+    private static ToolCallback tool(String name, String description) {
+        var definition = ToolDefinition.builder().name(name).description(description)
+                .inputSchema("{\"type\":\"object\",\"properties\":{\"query\":{\"type\":\"string\"}}}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return name + " called with " + toolInput;
+            }
+        };
+    }
+
+    private static final List<ToolCallback> TOOLS = List.of(
+            tool("github_search_issues", "Search GitHub issues in a repository"),
+            tool("github_create_pull_request", "Open a pull request on GitHub"),
+            tool("calendar_list_events", "List calendar events for a day"),
+            tool("weather_forecast", "Weather forecast for a city"));
+
+    private static List<String> names(List<ToolCallback> tools) {
+        return tools.stream().map(t -> t.getToolDefinition().name()).toList();
+    }
+
+    private static ToolCallback discoveryTool(ToolRouter.Routing routing, String name) {
+        return routing.discovery().stream().filter(t -> t.getToolDefinition().name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void route_sendsRelevantToolsAndDiscoveryForTheRest() {
+        var router = new ToolRouter(1);
+
+        var routed = router.route(TOOLS, List.of(ChatMessage.of("user", "What's the weather in Vilnius tomorrow?")));
+
+        assertEquals(List.of("weather_forecast"), names(routed.tools()));
+        assertEquals(Set.of("discoverTools", "callDiscoveredTool"), Set.copyOf(names(routed.discovery())));
+        var discover = discoveryTool(routed, "discoverTools");
+        assertTrue(discover.call("{\"query\":\"calendar events\"}").contains("calendar_list_events"));
+        assertFalse(discover.call("{\"query\":\"calendar events\"}").contains("weather_forecast"));
+        assertEquals("\"calendar_list_events called with {\\\"day\\\":\\\"monday\\\"}\"", discoveryTool(routed, "callDiscoveredTool").call(
+                "{\"name\":\"calendar_list_events\",\"input\":\"{\\\"day\\\":\\\"monday\\\"}\"}"));
+
+        var stats = router.stats();
+        assertEquals(1, stats.routedRequests());
+        assertEquals(3, stats.toolsLeftOut());
+        assertTrue(stats.schemaTokensSaved() != 0);
+    }
+
+    @Test
+    void route_keepsAllToolsWhenRoutingIsOffOrWithinTopK() {
+        var messages = List.of(ChatMessage.of("user", "hello"));
+
+        assertEquals(new ToolRouter.Routing(TOOLS, List.of()), new ToolRouter(0).route(TOOLS, messages));
+        assertEquals(new ToolRouter.Routing(TOOLS, List.of()), new ToolRouter(4).route(TOOLS, messages));
+    }
+}
@@ -0,0 +1,71 @@
+package com.programmersdiary.aidaemon.files;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachmentProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService fileStorageService;
+    private AttachmentProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService(tempDir.toString());
+        processor = new AttachmentProcessor(fileStorageService, 16, 8, 4, 4, 1024);
+    }
+
+    @Test
+    void prepare_inlinesSmallTextAndPreviewsLargeText() throws IOException {
+        var small = fileStorageService.store("conv-1", "a.txt", "text/plain", "short".getBytes());
+        var large = fileStorageService.store("conv-1", "b.txt", "text/plain", "0123456789abcdefghij".getBytes());
+
+        assertTrue(processor.prepare(small).text().contains("```txt\nshort\n```"));
+        var preview = processor.prepare(large).text();
+        assertTrue(preview.contains("\n01234567\n"));
+        assertFalse(preview.contains("89abcdef"));
+        assertTrue(preview.contains("readAttachment with file id " + large.id()));
+    }
+
+    @Test
+    void prepare_referencesLargeBinariesAndMediaWithoutInlining() throws IOException {
+        var binary = fileStorageService.store("conv-1", "blob.bin", "application/octet-stream", new byte[100]);
+        var image = fileStorageService.store("conv-1", "big.png", "image/png", new byte[100]);
+        var smallImage = fileStorageService.store("conv-1", "tiny.png", "image/png", new byte[]{1, 2});
+
+        var binaryContent = processor.prepare(binary);
+        assertNull(binaryContent.media());
+        assertTrue(binaryContent.text().contains("100 bytes"));
+        assertFalse(binaryContent.text().contains("base64"));
+        assertNull(processor.prepare(image).media());
+        assertNotNull(processor.prepare(smallImage).media());
+    }
+
+    @Test
+    void prepare_servesCachedContentWithoutRereadingTheFile() throws IOException {
+        var file = fileStorageService.store("conv-1", "a.txt", "text/plain", "cached".getBytes());
+        var first = processor.prepare(file);
+        Files.delete(tempDir.resolve("conversations").resolve("conv-1").resolve("files").resolve(file.id() + ".txt"));
+
+        assertSame(first, processor.prepare(file));
+    }
+
+    @Test
+    void read_returnsPageWithPosition() throws IOException {
+        var file = fileStorageService.store("conv-1", "b.txt", "text/plain", "0123456789".getBytes());
+
+        var page = processor.read("conv-1", file.id(), 4, 3);
+
+        assertTrue(page.startsWith("Bytes 4 to 7 of 10 in b.txt (more remains)"));
+        assertTrue(page.endsWith("456"));
+    }
+}
@@ -90,4 +90,27 @@ class FileStorageServiceTest {
         assertArrayEquals("aaa".getBytes(), service.getBytes(a1.id()));
         assertArrayEquals("bbb".getBytes(), service.getBytes(a2.id()));
     }
+
+    @Test
+    void readRange_readsPagesOnlyWithinOwningConversation() throws IOException {
+        var service = new FileStorageService(tempDir.toString());
+        var attachment = service.store("conv-1", "log.txt", "text/plain", "0123456789".getBytes());
+
+        assertArrayEquals("345".getBytes(), service.readRange("conv-1", attachment.id(), 3, 3));
+        assertArrayEquals("89".getBytes(), service.readRange("conv-1", attachment.id(), 8, 100));
+        assertEquals(0, service.readRange("conv-1", attachment.id(), 10, 5).length);
+        assertEquals(10, service.size(attachment.id()));
+        assertThrows(IOException.class, () -> service.readRange("conv-2", attachment.id(), 0, 5));
+    }
+
+    @Test
+    void readRange_rejectsIdsReachingIntoOtherConversations() throws IOException {
+        var service = new FileStorageService(tempDir.toString());
+        service.store("conv-1", "mine.txt", "text/plain", "mine".getBytes());
+        var other = service.store("conv-2", "secret.txt", "text/plain", "secret".getBytes());
+
+        assertThrows(IOException.class,
+                () -> service.readRange("conv-1", "../../conv-2/files/" + other.id(), 0, 6));
+        assertThrows(IOException.class, () -> service.getBytes("../conv-2/files/" + other.id()));
+    }
 }
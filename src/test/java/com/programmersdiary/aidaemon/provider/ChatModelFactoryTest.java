@@ -0,0 +1,49 @@
+package com.programmersdiary.aidaemon.provider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatModelFactoryTest {
+
+    @TempDir
+    Path configDir;
+
+    private static ProviderConfig config(String model) {
+        return new ProviderConfig("p1", "OpenAI", ProviderType.OPENAI, "key", "http://localhost:1", model, null);
+    }
+
+    @Test
+    void create_reusesModelUntilConfigurationChanges() {
+        var repository = new ProviderConfigRepository(configDir.toString());
+        var factory = new ChatModelFactory(repository, ToolCallingManager.builder().build());
+        factory.init();
+
+        var model = factory.create(config("gpt-4o"));
+        assertSame(model, factory.create(config("gpt-4o")));
+        assertNotSame(model, factory.create(config("gpt-4.1")));
+
+        var rebuilt = factory.create(config("gpt-4.1"));
+        repository.save(config("gpt-4.1"));
+        assertNotSame(rebuilt, factory.create(config("gpt-4.1")));
+    }
+
+    @Test
+    void promptOptions_carryModelAndToolsForEveryChatProvider() {
+        var factory = new ChatModelFactory();
+        for (var type : List.of(ProviderType.OPENAI, ProviderType.ANTHROPIC, ProviderType.OLLAMA, ProviderType.GEMINI)) {
+            var options = factory.promptOptions(new ProviderConfig("p", "p", type, "key", null, "m", null), List.of());
+
+            assertEquals("m", options.getModel());
+            assertInstanceOf(ToolCallingChatOptions.class, options);
+        }
+        assertThrows(UnsupportedOperationException.class, () -> factory.promptOptions(
+                new ProviderConfig("p", "p", ProviderType.DALLE_3, "key", null, null, null), List.of()));
+    }
+}
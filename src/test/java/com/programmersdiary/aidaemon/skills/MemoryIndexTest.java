@@ -0,0 +1,40 @@
+package com.programmersdiary.aidaemon.skills;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryIndexTest {
+
+    private static MemoryIndex index() {
+        var memory = new LinkedHashMap<String, String>();
+        memory.put("favourite editor", "neovim with the gruvbox theme");
+        memory.put("deploy target", "staging cluster in eu-west, deploy with helm");
+        memory.put("birthday", "March 3rd");
+        memory.put("coffee", "flat white, no sugar");
+        return MemoryIndex.of(memory);
+    }
+
+    @Test
+    void search_ranksEntriesByRelevance() {
+        var hits = index().search("How do I deploy to staging?", 10);
+
+        assertEquals("deploy target", hits.get(0).getKey());
+        assertEquals(1, hits.size());
+        assertTrue(index().search("unrelated words only", 10).isEmpty());
+    }
+
+    @Test
+    void select_respectsEntryAndCharacterBudget() {
+        var index = index();
+
+        assertTrue(index.fitsWithin(4, 1000));
+        assertFalse(index.fitsWithin(3, 1000));
+        assertEquals(List.of("coffee"), index.select("editor coffee sugar", 5, 30).stream().map(Map.Entry::getKey).toList());
+        assertEquals(1, index.select("editor coffee sugar", 1, 1000).size());
+    }
+}
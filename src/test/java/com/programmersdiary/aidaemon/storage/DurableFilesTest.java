@@ -0,0 +1,77 @@
+package com.programmersdiary.aidaemon.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurableFilesTest {
+
+    private static final TypeReference<Map<String, String>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private List<String> listNames() throws IOException {
+        try (var stream = Files.list(tempDir)) {
+            return stream.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    void writeJson_replacesTargetAndLeavesNoTempFile() throws IOException {
+        var target = tempDir.resolve("memory.json");
+        DurableFiles.writeJson(target, objectMapper, Map.of("a", "1"));
+        DurableFiles.writeJson(target, objectMapper, Map.of("a", "2"));
+
+        assertEquals(List.of("memory.json"), listNames());
+        assertEquals(Map.of("a", "2"), DurableFiles.readJson(target, objectMapper, MAP_TYPE).orElseThrow());
+    }
+
+    @Test
+    void readJson_removesTempFilesOfInterruptedWrites() throws IOException {
+        var target = tempDir.resolve("memory.json");
+        DurableFiles.writeJson(target, objectMapper, Map.of("a", "1"));
+        Files.writeString(tempDir.resolve(".memory.json.123.tmp"), "{\"a\":\"half");
+
+        assertEquals(Map.of("a", "1"), DurableFiles.readJson(target, objectMapper, MAP_TYPE).orElseThrow());
+        assertEquals(List.of("memory.json"), listNames());
+    }
+
+    @Test
+    void readJson_movesTruncatedFileAsideAndReportsMissing() throws IOException {
+        var target = tempDir.resolve("memory.json");
+        Files.writeString(target, "{\"a\":\"1\",\"b\":");
+
+        assertTrue(DurableFiles.readJson(target, objectMapper, MAP_TYPE).isEmpty());
+        assertEquals(List.of("memory.json.corrupt"), listNames());
+    }
+
+    @Test
+    void readJson_movesEmptyFileAsideAndReportsMissing() throws IOException {
+        var target = tempDir.resolve("memory.json");
+        Files.write(target, new byte[0]);
+
+        assertTrue(DurableFiles.readJson(target, objectMapper, MAP_TYPE).isEmpty());
+        assertEquals(List.of("memory.json.corrupt"), listNames());
+    }
+
+    @Test
+    void readJson_movesTruncatedListAsideAndReportsMissing() throws IOException {
+        var target = tempDir.resolve("jobs.json");
+        Files.writeString(target, "[{\"id\":\"a\"},{\"id\":\"b\"");
+
+        assertTrue(DurableFiles.readJson(target, objectMapper, new TypeReference<List<Map<String, String>>>() {}).isEmpty());
+        assertEquals(List.of("jobs.json.corrupt"), listNames());
+    }
+}